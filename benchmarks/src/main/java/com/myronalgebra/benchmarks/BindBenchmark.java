@@ -0,0 +1,52 @@
+package com.myronalgebra.benchmarks;
+
+import com.myronalgebra.common.XmlFactories;
+import com.myronalgebra.common.XmlUtil;
+import com.myronalgebra.xmltojava.LoadContext;
+import com.myronalgebra.xmltojava.XmlToJava;
+import org.openjdk.jmh.annotations.*;
+import org.w3c.dom.Document;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of binding an already parsed DOM, the second half of load. The document is
+ * parsed once per trial with node expansion up front so that every invocation reads
+ * the same fully built tree.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class BindBenchmark {
+    @Param({"Simple", "Aggregate", "Reflective", "Primitives", "Collection", "Map", "ValueOf"})
+    public Scenario scenario;
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int size;
+
+    private Document document;
+    private XmlToJava reader;
+    private long delivered;
+
+    @Setup
+    public void setup() throws Exception {
+        document = XmlUtil.readDocument(new ByteArrayInputStream(scenario.document(size)),
+                XmlFactories.expandedDocumentBuilder());
+        if (document == null)
+            throw new IllegalStateException(XmlUtil.getError());
+        reader = scenario.reader(x -> delivered++);
+    }
+
+    @Benchmark
+    public long bind() {
+        delivered = 0;
+        LoadContext context = reader.load(document);
+        if (context.isError() || delivered != size)
+            throw new IllegalStateException(scenario + ": " + context.getDiagnostics());
+        return delivered;
+    }
+}
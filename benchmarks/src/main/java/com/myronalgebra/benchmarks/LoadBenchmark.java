@@ -0,0 +1,67 @@
+package com.myronalgebra.benchmarks;
+
+import com.myronalgebra.xmltojava.LoadContext;
+import com.myronalgebra.xmltojava.Reloader;
+import com.myronalgebra.xmltojava.XmlToJava;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end cost of reading a document: parse plus bind through load, the
+ * streaming reader that never builds a DOM, and a reload of an unchanged document.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class LoadBenchmark {
+    @Param({"Simple", "Aggregate", "Reflective", "Primitives", "Collection", "Map", "ValueOf"})
+    public Scenario scenario;
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int size;
+
+    private byte[] document;
+    private XmlToJava reader;
+    private Reloader reloader;
+    private long delivered;
+
+    @Setup
+    public void setup() {
+        document = scenario.document(size);
+        reader = scenario.reader(x -> delivered++);
+        reloader = reader.reloader();
+        reloader.reload(new ByteArrayInputStream(document));
+    }
+
+    @Benchmark
+    public long load() {
+        delivered = 0;
+        check(reader.load(new ByteArrayInputStream(document)));
+        return delivered;
+    }
+
+    @Benchmark
+    public long stream() {
+        delivered = 0;
+        check(reader.stream(new ByteArrayInputStream(document)));
+        return delivered;
+    }
+
+    @Benchmark
+    public int reloadUnchanged() {
+        LoadContext context = reloader.reload(new ByteArrayInputStream(document));
+        if (context.isError() || reloader.getChangeCount() != 0)
+            throw new IllegalStateException(scenario + ": " + context.getDiagnostics());
+        return reloader.getChangeCount();
+    }
+
+    private void check(LoadContext context) {
+        if (context.isError() || delivered != size)
+            throw new IllegalStateException(scenario + ": " + context.getDiagnostics());
+    }
+}
@@ -0,0 +1,113 @@
+package com.myronalgebra.benchmarks;
+
+import com.myronalgebra.xmltojava.Bindable;
+import com.myronalgebra.xmltojava.Hidden;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Classes bound by the benchmark scenarios. They follow the examples in the README.
+ * Aggregates are @Bindable and bound by generated binders except PlainSetting
+ * and Sample, which measure the reflective path.
+ */
+public class Model {
+    public enum Mode {One, Two, Three}
+
+    /**
+     * Aggregate with public, setter-only and hidden fields.
+     */
+    @Bindable
+    public static class Setting {
+        public String name;
+        private int level;
+        public boolean enabled;
+        @Hidden public String password;
+        public Mode mode;
+
+        public void setLevel(int level) {
+            this.level = level;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+    }
+
+    /**
+     * Setting without a generated binder.
+     */
+    public static class PlainSetting extends Setting {
+    }
+
+    /**
+     * Aggregate containing a collection.
+     */
+    @Bindable
+    public static class Row {
+        public String name;
+        public ArrayList<Integer> values;
+    }
+
+    /**
+     * Numeric record with primitive fields and a primitive array, bound through reflection.
+     */
+    public static class Sample {
+        public int id;
+        public long time;
+        public double value;
+        public boolean valid;
+        public double[] values;
+    }
+
+    @Bindable
+    public static class Tuple {
+        public String a;
+        public String b;
+    }
+
+    /**
+     * Aggregate containing a map of non-simple values.
+     */
+    @Bindable
+    public static class ContainsMap {
+        public String name;
+        public HashMap<String, Tuple> map;
+    }
+
+    /**
+     * User-defined simple class.
+     */
+    public static class Vector {
+        public final double[] values;
+
+        public Vector(double[] values) {
+            this.values = values;
+        }
+
+        public static Vector valueOf(String string) {
+            String[] strings = string.split(",");
+            double[] values = new double[strings.length];
+            for (int i = 0; i < strings.length; i++)
+                values[i] = Double.parseDouble(strings[i]);
+            return new Vector(values);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0)
+                    sb.append(',');
+                sb.append(values[i]);
+            }
+            return sb.toString();
+        }
+    }
+
+    @Bindable
+    public static class Vectors {
+        public Vector v1;
+        public Vector v2;
+    }
+}
@@ -0,0 +1,40 @@
+package com.myronalgebra.benchmarks;
+
+import com.myronalgebra.common.XmlUtil;
+import org.openjdk.jmh.annotations.*;
+import org.w3c.dom.Document;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building the DOM alone, the first half of load.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class ParseBenchmark {
+    @Param({"Simple", "Aggregate", "Reflective", "Primitives", "Collection", "Map", "ValueOf"})
+    public Scenario scenario;
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int size;
+
+    private byte[] document;
+
+    @Setup
+    public void setup() {
+        document = scenario.document(size);
+    }
+
+    @Benchmark
+    public Document parse() {
+        Document doc = XmlUtil.readDocument(new ByteArrayInputStream(document));
+        if (doc == null)
+            throw new IllegalStateException(XmlUtil.getError());
+        return doc;
+    }
+}
@@ -0,0 +1,132 @@
+package com.myronalgebra.benchmarks;
+
+import com.myronalgebra.xmltojava.XmlToJava;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * The README scenarios. A document consists of a virtual root with size anonymous records
+ * of the scenario's alias.
+ */
+public enum Scenario {
+    /** Simple alias, one Integer per record. */
+    Simple {
+        void register(XmlToJava.Builder builder, Consumer<Object> consumer) {
+            builder.add("count", consumer::accept, Integer.class);
+        }
+
+        void write(StringBuilder sb, int i) {
+            sb.append("<count>").append(i).append("</count>\n");
+        }
+    },
+    /** Aggregate with setters and @Hidden fields. */
+    Aggregate {
+        void register(XmlToJava.Builder builder, Consumer<Object> consumer) {
+            builder.add("setting", consumer::accept, Model.Setting.class);
+        }
+
+        void write(StringBuilder sb, int i) {
+            sb.append("<setting>\n")
+                    .append("  <name>setting ").append(i).append("</name>\n")
+                    .append("  <level>").append(i % 100).append("</level>\n")
+                    .append("  <enabled>").append(i % 2 == 0).append("</enabled>\n")
+                    .append("  <password>secret</password>\n")
+                    .append("  <mode>").append(Model.Mode.values()[i % 3]).append("</mode>\n")
+                    .append("</setting>\n");
+        }
+    },
+    /** Aggregate bound through reflection. */
+    Reflective {
+        void register(XmlToJava.Builder builder, Consumer<Object> consumer) {
+            builder.add("setting", consumer::accept, Model.PlainSetting.class);
+        }
+
+        void write(StringBuilder sb, int i) {
+            Aggregate.write(sb, i);
+        }
+    },
+    /** Aggregate of primitive fields and a double[]. */
+    Primitives {
+        void register(XmlToJava.Builder builder, Consumer<Object> consumer) {
+            builder.add("sample", consumer::accept, Model.Sample.class);
+        }
+
+        void write(StringBuilder sb, int i) {
+            sb.append("<sample>\n")
+                    .append("  <id>").append(i).append("</id>\n")
+                    .append("  <time>").append(1700000000000L + i).append("</time>\n")
+                    .append("  <value>").append(i * 0.25).append("</value>\n")
+                    .append("  <valid>").append(i % 2 == 0).append("</valid>\n")
+                    .append("  <values>");
+            for (int j = 0; j < 4; j++)
+                sb.append("<v>").append(i + j * 0.5).append("</v>");
+            sb.append("</values>\n</sample>\n");
+        }
+    },
+    /** Aggregate containing an ArrayList of Integer. */
+    Collection {
+        void register(XmlToJava.Builder builder, Consumer<Object> consumer) {
+            builder.add("row", consumer::accept, Model.Row.class);
+        }
+
+        void write(StringBuilder sb, int i) {
+            sb.append("<row>\n  <name>row ").append(i).append("</name>\n  <values>");
+            for (int j = 0; j < 4; j++)
+                sb.append("<item>").append(i + j).append("</item>");
+            sb.append("</values>\n</row>\n");
+        }
+    },
+    /** Aggregate containing a map of tuples. */
+    Map {
+        void register(XmlToJava.Builder builder, Consumer<Object> consumer) {
+            builder.add("containsMap", consumer::accept, Model.ContainsMap.class);
+        }
+
+        void write(StringBuilder sb, int i) {
+            sb.append("<containsMap>\n  <name>map ").append(i).append("</name>\n  <map>\n")
+                    .append("    <key1><a>one</a><b>two</b></key1>\n")
+                    .append("    <key2><a>three</a><b>four</b></key2>\n")
+                    .append("  </map>\n</containsMap>\n");
+        }
+    },
+    /** Aggregate of a user-defined simple class with a valueOf method. */
+    ValueOf {
+        void register(XmlToJava.Builder builder, Consumer<Object> consumer) {
+            builder.add("vectors", consumer::accept, Model.Vectors.class);
+        }
+
+        void write(StringBuilder sb, int i) {
+            sb.append("<vectors>\n")
+                    .append("  <v1>").append(i).append(",2,3</v1>\n")
+                    .append("  <v2>4,5,").append(i).append("</v2>\n")
+                    .append("</vectors>\n");
+        }
+    };
+
+    abstract void register(XmlToJava.Builder builder, Consumer<Object> consumer);
+
+    abstract void write(StringBuilder sb, int i);
+
+    /**
+     * @param consumer receives every anonymous instance
+     * @return a frozen reader for this scenario
+     */
+    XmlToJava reader(Consumer<Object> consumer) {
+        XmlToJava.Builder builder = XmlToJava.builder();
+        register(builder, consumer);
+        return builder.build();
+    }
+
+    /**
+     * @param size number of records
+     * @return UTF-8 encoded document
+     */
+    byte[] document(int size) {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\"?>\n<root>\n");
+        for (int i = 0; i < size; i++)
+            write(sb, i);
+        sb.append("</root>\n");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,53 @@
+package com.myronalgebra.benchmarks;
+
+import com.myronalgebra.xmltojava.JavaToXml;
+import com.myronalgebra.xmltojava.LoadContext;
+import com.myronalgebra.xmltojava.XmlToJava;
+import org.openjdk.jmh.annotations.*;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of writing the instances of a scenario back to XML with JavaToXml. The instances
+ * are loaded once per trial; the document is written to a writer that discards it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class WriteBenchmark {
+    @Param({"Simple", "Aggregate", "Reflective", "Primitives", "Collection", "Map", "ValueOf"})
+    public Scenario scenario;
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int size;
+
+    private List<Object> instances;
+    private JavaToXml writer;
+
+    @Setup
+    public void setup() {
+        instances = new ArrayList<>(size);
+        XmlToJava reader = scenario.reader(instances::add);
+        LoadContext context = reader.stream(new ByteArrayInputStream(scenario.document(size)));
+        if (context.isError() || instances.size() != size)
+            throw new IllegalStateException(scenario + ": " + context.getDiagnostics());
+        writer = reader.writer();
+    }
+
+    @Benchmark
+    public int write() throws XMLStreamException {
+        try (JavaToXml.Output out = writer.open(Writer.nullWriter(), "root")) {
+            for (Object instance : instances)
+                out.write(instance);
+        }
+        return instances.size();
+    }
+}
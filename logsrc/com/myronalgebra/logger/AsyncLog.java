@@ -0,0 +1,251 @@
+package com.myronalgebra.logger;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes LogRecords on a background thread.
+ * <p>Callers put records into a bounded ring buffer shared by any number of producers.
+ * A producer claims a slot by advancing the tail with a compare-and-set; each slot has a
+ * sequence number that tells producers whether the slot is free and the writer whether
+ * it has been filled, so neither side takes a lock. The single writer drains whatever is
+ * available, formats it into one buffer, prints it with one call and flushes once per batch.</p>
+ * <p>What happens when the buffer is full depends on the BackPressure: the caller waits
+ * for a free slot, the record is dropped, or records below a level are dropped while the
+ * others wait. Dropped records are counted and reported by the writer.</p>
+ * <p>If Logger has a LogAppender, the writer passes it the records instead and flushes
+ * it once per batch.</p>
+ * <p>A record published after close has stopped the writer is written by the producer
+ * itself, so switching writers loses nothing.</p>
+ */
+final class AsyncLog {
+    private static final int MAX_BATCH = 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final LogRecord[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final Logger.BackPressure backPressure;
+    private final Logger.LogLevel keepLevel;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+    // accessed only by the writer, or once it has stopped under the lock of this
+    private long head;
+    private long droppedReported;
+    private final TimestampFormatter timestamps = new TimestampFormatter();
+    private final StringBuilder batch = new StringBuilder(8192);
+
+    private volatile long written;
+    private volatile boolean waiting;
+    private volatile boolean running = true;
+
+    /**
+     * @param capacity rounded up to a power of two
+     * @param backPressure what to do when the buffer is full
+     * @param keepLevel with DropBelowLevel, the lowest level that waits instead of being dropped
+     */
+    AsyncLog(int capacity, Logger.BackPressure backPressure, Logger.LogLevel keepLevel) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be positive");
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new LogRecord[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++)
+            sequences.set(i, i);
+        this.mask = size - 1;
+        this.backPressure = backPressure;
+        this.keepLevel = keepLevel;
+        writer = new Thread(this::run, "Logger");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * @return false if the record was dropped
+     */
+    boolean enqueue(LogRecord record) {
+        boolean wait = backPressure == Logger.BackPressure.Block
+                || backPressure == Logger.BackPressure.DropBelowLevel && record.level.ordinal() >= keepLevel.ordinal();
+        int spins = 0;
+        while (!offer(record)) {
+            if (!running && writeRemaining())
+                continue;
+            if (!wait || !running) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            wakeWriter();
+            if (++spins < 100)
+                Thread.onSpinWait();
+            else
+                LockSupport.parkNanos(50_000);
+        }
+        wakeWriter();
+        // the writer drains once more after running is cleared; past that, nobody will
+        if (!running)
+            writeRemaining();
+        return true;
+    }
+
+    private boolean offer(LogRecord record) {
+        long pos = tail.get();
+        while (true) {
+            int index = (int) pos & mask;
+            long difference = sequences.get(index) - pos;
+            if (difference == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    slots[index] = record;
+                    sequences.set(index, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    private LogRecord poll() {
+        int index = (int) head & mask;
+        if (sequences.get(index) != head + 1)
+            return null;
+        LogRecord record = slots[index];
+        slots[index] = null;
+        sequences.set(index, head + slots.length);
+        head++;
+        return record;
+    }
+
+    private void wakeWriter() {
+        if (waiting) {
+            waiting = false;
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * @return number of records dropped because the buffer was full
+     */
+    long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Waits until every record enqueued before the call has been written.
+     */
+    void flush() {
+        long target = tail.get();
+        while (written < target && writer.isAlive()) {
+            wakeWriter();
+            LockSupport.parkNanos(100_000);
+        }
+    }
+
+    /**
+     * Writes the remaining records and stops the writer.
+     */
+    void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        writeRemaining();
+    }
+
+    /**
+     * Waits for the writer to stop and writes the records left in the buffer on the calling thread.
+     * @return false if the writer is still running
+     */
+    private synchronized boolean writeRemaining() {
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive())
+            return false;
+        // a producer may have claimed a slot without filling it yet; wait for it to keep the order
+        while (head < tail.get()) {
+            if (drain() == 0)
+                Thread.onSpinWait();
+        }
+        return true;
+    }
+
+    private void run() {
+        while (true) {
+            if (drain() > 0)
+                continue;
+            if (!running && drain() == 0)
+                break;
+            waiting = true;
+            // a producer that enqueued before seeing waiting does not wake us; look once more
+            if (sequences.get((int) head & mask) == head + 1) {
+                waiting = false;
+                continue;
+            }
+            LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            waiting = false;
+        }
+    }
+
+    private int drain() {
+        LogAppender appender = Logger.getAppender();
+        if (appender != null) {
+            synchronized (appender) {
+                return drain(appender);
+            }
+        }
+        int count = 0;
+        LogRecord record;
+        while (count < MAX_BATCH && (record = poll()) != null) {
+            record.appendTo(batch, timestamps);
+            count++;
+        }
+        LogRecord droppedRecord = droppedRecord();
+        if (droppedRecord != null)
+            droppedRecord.appendTo(batch, timestamps);
+        if (batch.length() > 0) {
+            PrintStream out = Logger.getPrintStream();
+            synchronized (out) {
+                out.print(batch);
+                out.flush();
+            }
+            batch.setLength(0);
+        }
+        written = head;
+        return count;
+    }
+
+    private int drain(LogAppender appender) {
+        int count = 0;
+        LogRecord record;
+        while (count < MAX_BATCH && (record = poll()) != null) {
+            Logger.append(appender, record);
+            count++;
+        }
+        LogRecord droppedRecord = droppedRecord();
+        if (droppedRecord != null)
+            Logger.append(appender, droppedRecord);
+        if (count > 0 || droppedRecord != null)
+            Logger.flush(appender);
+        written = head;
+        return count;
+    }
+
+    /**
+     * @return a warning with the number of records dropped since the last one, or null
+     */
+    private LogRecord droppedRecord() {
+        long droppedNow = dropped.get();
+        if (droppedNow == droppedReported)
+            return null;
+        LogRecord record = new LogRecord(Logger.LogLevel.Warning, null, "{} log messages dropped", null, 1, droppedNow - droppedReported, null, null);
+        droppedReported = droppedNow;
+        return record;
+    }
+}
@@ -0,0 +1,22 @@
+package com.myronalgebra.logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Receives the records written by Logger in place of its PrintStream.
+ * Logger never calls an appender from two threads at once, so implementations need
+ * not be thread safe.
+ * @see Logger#setAppender(LogAppender)
+ */
+public interface LogAppender extends Closeable {
+    /**
+     * @param record an enabled message
+     */
+    void append(LogRecord record) throws IOException;
+
+    /**
+     * Called after a record in sync mode and after each batch in async mode.
+     */
+    void flush() throws IOException;
+}
@@ -0,0 +1,114 @@
+package com.myronalgebra.logger;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Renders binary segments written by MappedFileAppender as the text Logger would have printed.
+ * <pre>
+ * java com.myronalgebra.logger.LogDecoder logs/app-00001.blog logs/app-00002.blog
+ * </pre>
+ */
+public class LogDecoder {
+    private final TimestampFormatter timestamps = new TimestampFormatter();
+    private final StringBuilder line = new StringBuilder(256);
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("usage: LogDecoder segment.blog ...");
+            System.exit(2);
+        }
+        LogDecoder decoder = new LogDecoder();
+        PrintStream out = System.out;
+        for (String arg : args) {
+            try {
+                decoder.decode(Paths.get(arg), out);
+            } catch (IOException e) {
+                System.err.println(arg + ": " + e.getMessage());
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * @param segment a binary segment
+     * @param out receives one line per record
+     * @throws IOException if the file cannot be read or is not a binary segment
+     */
+    public void decode(Path segment, Appendable out) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < 5 || buffer.getInt() != MappedFileAppender.MAGIC)
+            throw new IOException("not a binary log segment");
+        if (buffer.get() != MappedFileAppender.VERSION)
+            throw new IOException("unsupported log segment version");
+        List<String> templates = new ArrayList<>();
+        Logger.LogLevel[] levels = Logger.LogLevel.values();
+        while (buffer.hasRemaining()) {
+            byte kind = buffer.get();
+            if (kind == MappedFileAppender.TEMPLATE) {
+                int id = buffer.getInt();
+                String format = getString(buffer);
+                while (templates.size() <= id)
+                    templates.add(null);
+                templates.set(id, format);
+            } else if (kind == MappedFileAppender.RECORD) {
+                long millis = buffer.getLong();
+                Logger.LogLevel level = levels[buffer.get()];
+                String format = templates.get(buffer.getInt());
+                String exception = getString(buffer);
+                Object[] items = new Object[buffer.getInt()];
+                for (int i = 0; i < items.length; i++)
+                    items[i] = getItem(buffer);
+                line.setLength(0);
+                LogRecord.appendLine(line, timestamps, millis, level, exception, format, items, 0, null, null, null);
+                out.append(line);
+            } else {
+                // the unwritten rest of a segment that was not closed
+                break;
+            }
+        }
+    }
+
+    private static Object getItem(ByteBuffer buffer) throws IOException {
+        byte type = buffer.get();
+        switch (type) {
+            case MappedFileAppender.NULL:
+                return null;
+            case MappedFileAppender.LONG:
+                return buffer.getLong();
+            case MappedFileAppender.DOUBLE:
+                return buffer.getDouble();
+            case MappedFileAppender.FLOAT:
+                return buffer.getFloat();
+            case MappedFileAppender.BOOLEAN:
+                return buffer.get() != 0;
+            case MappedFileAppender.STRING:
+                return getString(buffer);
+            case MappedFileAppender.BIG_INTEGER:
+                return new BigInteger(getString(buffer));
+            default:
+                throw new IOException("unknown item type " + type);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0)
+            return null;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -1,6 +1,8 @@
 package com.myronalgebra.logger;
 
 import javax.swing.*;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
 import java.awt.*;
 import java.util.stream.Stream;
 
@@ -8,29 +10,60 @@ import static com.myronalgebra.swingutil.Register.*;
 
 /**
  * A UI that captures and presents lines written to a LogStream. Also
- * provides a combo box that the user can select to change the log level.
+ * provides a combo box that the user can select to change the log level
+ * and one that hides lines below a level.
+ * <p>Lines are kept in a bounded LogListModel and shown in a JList with a fixed
+ * cell height, so only the visible rows are laid out and painted. The list follows
+ * new lines unless the user has scrolled away from the end.</p>
  */
 public class LogFrame extends JFrame {
+    public static final int DEFAULT_LINE_LIMIT = 10000;
+
     private JPanel panel1;
-    private JTextArea logText;
+    private JList<String> logList;
+    private JScrollPane scrollPane;
     private JButton clearButton;
     private JComboBox comboBox1;
+    private JComboBox<String> filterComboBox;
+    private final LogListModel lines = new LogListModel(DEFAULT_LINE_LIMIT);
+    private boolean follow = true;
     public LogStream logStream;
     public static LogFrame instance;
 
     public LogFrame() {
         initComponents();
-        logStream = new LogStream(logText);
+        logStream = new LogStream(lines);
     }
 
     private void initComponents() {
         register("logframebounds", this, 600, 100, 600, 400);
-        logText = new JTextArea();
-        logText.setLineWrap(true);
-        logText.setRows(1024);
-        logText.setPreferredSize(new Dimension(500, 400));
-
-        JScrollPane sp = new JScrollPane(logText);
+        logList = new JList<>(lines);
+        logList.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        logList.setFixedCellHeight(logList.getFontMetrics(logList.getFont()).getHeight() + 2);
+        logList.setFixedCellWidth(logList.getFontMetrics(logList.getFont()).charWidth('m') * 160);
+
+        scrollPane = new JScrollPane(logList);
+        scrollPane.setPreferredSize(new Dimension(500, 400));
+        JScrollBar scrollBar = scrollPane.getVerticalScrollBar();
+        scrollBar.addAdjustmentListener(e -> {
+            if (!e.getValueIsAdjusting())
+                follow = scrollBar.getValue() + scrollBar.getVisibleAmount() >= scrollBar.getMaximum() - logList.getFixedCellHeight();
+        });
+        lines.addListDataListener(new ListDataListener() {
+            @Override
+            public void intervalAdded(ListDataEvent e) {
+                if (follow)
+                    SwingUtilities.invokeLater(() -> logList.ensureIndexIsVisible(lines.getSize() - 1));
+            }
+
+            @Override
+            public void intervalRemoved(ListDataEvent e) {
+            }
+
+            @Override
+            public void contentsChanged(ListDataEvent e) {
+            }
+        });
 
         clearButton = new JButton("Clear");
         comboBox1 = new JComboBox();
@@ -39,23 +72,44 @@ public class LogFrame extends JFrame {
         Stream.of(Logger.LogLevel.values()).forEach(t->model.addElement(t.toString()));
         comboBox1.setModel(model);
 
-        clearButton.addActionListener(e -> logStream.clear());
-        comboBox1.addActionListener(e -> LoggerOptions.logLevel = Logger.LogLevel.values()[comboBox1.getSelectedIndex()]);
+        filterComboBox = new JComboBox<>();
+        DefaultComboBoxModel<String> filterModel = new DefaultComboBoxModel<>();
+        Stream.of(Logger.LogLevel.values()).forEach(t->filterModel.addElement("Show " + t));
+        filterComboBox.setModel(filterModel);
+        filterComboBox.addActionListener(e -> lines.setFilter(Logger.LogLevel.values()[filterComboBox.getSelectedIndex()]));
+
+        clearButton.addActionListener(e -> lines.clear());
+        comboBox1.addActionListener(e -> Logger.setLevel(Logger.LogLevel.values()[comboBox1.getSelectedIndex()]));
         comboBox1.setSelectedItem(LoggerOptions.logLevel.toString());
 
         JPanel controlPanel = new JPanel();
         controlPanel.setLayout(new FlowLayout(FlowLayout.RIGHT));
+        controlPanel.add(filterComboBox);
         controlPanel.add(comboBox1);
         controlPanel.add(clearButton);
 
         panel1 = new JPanel();
         panel1.setLayout(new BorderLayout());
-        panel1.add(sp, BorderLayout.CENTER);
+        panel1.add(scrollPane, BorderLayout.CENTER);
         panel1.add(controlPanel, BorderLayout.SOUTH);
     }
 
     public void clear() {
-        logStream.clear();
+        lines.clear();
+    }
+
+    /**
+     * @param limit number of lines kept; older lines are discarded
+     */
+    public void setLineLimit(int limit) {
+        lines.setLimit(limit);
+    }
+
+    /**
+     * @param level lowest level shown; lines below it are kept and shown again when it is lowered
+     */
+    public void setFilter(Logger.LogLevel level) {
+        filterComboBox.setSelectedIndex(level.ordinal());
     }
 
     public static LogFrame getInstance() {
@@ -90,9 +144,7 @@ public class LogFrame extends JFrame {
     }
 
     private void createUIComponents() {
-        logText = new JTextArea();
-        logText.setPreferredSize(new Dimension(500, 400));
-        logStream = new LogStream(logText);
+        logStream = new LogStream(lines);
         logStream.setListener(x->instance.toFront());
     }
 
@@ -0,0 +1,251 @@
+package com.myronalgebra.logger;
+
+import javax.swing.*;
+import java.util.ArrayDeque;
+
+/**
+ * A bounded list of log lines for a JList, filtered by level.
+ * <p>Lines may be added from any thread. They are queued and moved into the model by
+ * a Swing timer, at most once per UPDATE_MILLIS, so a burst of messages costs the event
+ * dispatch thread one update and one repaint. Beyond the limit the oldest lines are
+ * evicted; if lines arrive faster than they are shown, the oldest queued lines are
+ * discarded as well.</p>
+ * <p>The filter hides lines below a level without discarding them, so lowering it shows
+ * them again. Lines whose level is not known are always shown.</p>
+ */
+@SuppressWarnings("serial")
+public class LogListModel extends AbstractListModel<String> {
+    static final int UPDATE_MILLIS = 40;
+
+    private static final class Line {
+        final Logger.LogLevel level;
+        final String text;
+
+        Line(Logger.LogLevel level, String text) {
+            this.level = level;
+            this.text = text;
+        }
+    }
+
+    /**
+     * A fixed-capacity circular array.
+     */
+    private static final class Ring {
+        private Line[] lines;
+        private int head;
+        private int size;
+
+        Ring(int capacity) {
+            lines = new Line[capacity];
+        }
+
+        int size() {
+            return size;
+        }
+
+        int capacity() {
+            return lines.length;
+        }
+
+        Line get(int index) {
+            return lines[(head + index) % lines.length];
+        }
+
+        void add(Line line) {
+            lines[(head + size) % lines.length] = line;
+            size++;
+        }
+
+        Line removeFirst() {
+            Line line = lines[head];
+            lines[head] = null;
+            head = (head + 1) % lines.length;
+            size--;
+            return line;
+        }
+
+        void clear() {
+            lines = new Line[lines.length];
+            head = 0;
+            size = 0;
+        }
+    }
+
+    // accessed on the event dispatch thread
+    private Ring all;
+    private Ring visible;
+    private Logger.LogLevel filter = Logger.LogLevel.Trace;
+    // guarded by pending
+    private final ArrayDeque<Line> pending = new ArrayDeque<>();
+    private int limit;
+    private final Timer timer;
+    private boolean scheduled;
+
+    /**
+     * @param limit maximum number of lines kept
+     */
+    public LogListModel(int limit) {
+        if (limit < 1)
+            throw new IllegalArgumentException("limit must be positive");
+        this.limit = limit;
+        all = new Ring(limit);
+        visible = new Ring(limit);
+        timer = new Timer(UPDATE_MILLIS, e -> update());
+        timer.setRepeats(false);
+    }
+
+    /**
+     * Queues a line. May be called from any thread.
+     * @param line text without line separator
+     */
+    public void add(String line) {
+        Line entry = new Line(levelOf(line), line);
+        synchronized (pending) {
+            if (pending.size() >= limit)
+                pending.removeFirst();
+            pending.addLast(entry);
+            if (scheduled)
+                return;
+            scheduled = true;
+        }
+        timer.restart();
+    }
+
+    /**
+     * Finds the level written by Logger after the timestamp, e.g. "... [Warning] message".
+     * @return the level or null if the line has none
+     */
+    static Logger.LogLevel levelOf(String line) {
+        int open = line.indexOf('[');
+        if (open < 0 || open > TimestampFormatter.LENGTH + 1)
+            return null;
+        int close = line.indexOf(']', open);
+        if (close < 0)
+            return null;
+        String name = line.substring(open + 1, close);
+        for (Logger.LogLevel level : Logger.LogLevel.values()) {
+            if (level.name().equals(name))
+                return level;
+        }
+        return null;
+    }
+
+    /**
+     * Moves the queued lines into the model and notifies the list once.
+     */
+    private void update() {
+        Line[] batch;
+        synchronized (pending) {
+            batch = pending.toArray(new Line[0]);
+            pending.clear();
+            scheduled = false;
+        }
+        int oldSize = visible.size();
+        int removed = 0;
+        for (Line line : batch) {
+            if (all.size() == all.capacity()) {
+                Line evicted = all.removeFirst();
+                if (visible.size() > 0 && visible.get(0) == evicted) {
+                    visible.removeFirst();
+                    removed++;
+                }
+            }
+            all.add(line);
+            if (shows(line))
+                visible.add(line);
+        }
+        fireChanges(oldSize, removed);
+    }
+
+    private void fireChanges(int oldSize, int removedFromStart) {
+        int newSize = visible.size();
+        if (removedFromStart > oldSize) {
+            if (oldSize > 0)
+                fireIntervalRemoved(this, 0, oldSize - 1);
+            if (newSize > 0)
+                fireIntervalAdded(this, 0, newSize - 1);
+            return;
+        }
+        if (removedFromStart > 0)
+            fireIntervalRemoved(this, 0, removedFromStart - 1);
+        int kept = oldSize - removedFromStart;
+        if (newSize > kept)
+            fireIntervalAdded(this, kept, newSize - 1);
+    }
+
+    private boolean shows(Line line) {
+        return line.level == null || line.level.ordinal() >= filter.ordinal();
+    }
+
+    /**
+     * Shows only lines at or above a level. Called on the event dispatch thread.
+     * @param level
+     */
+    public void setFilter(Logger.LogLevel level) {
+        filter = level;
+        refilter(all.capacity());
+    }
+
+    public Logger.LogLevel getFilter() {
+        return filter;
+    }
+
+    /**
+     * Changes the number of lines kept, evicting the oldest if there are more. Called on
+     * the event dispatch thread.
+     * @param limit
+     */
+    public void setLimit(int limit) {
+        if (limit < 1)
+            throw new IllegalArgumentException("limit must be positive");
+        synchronized (pending) {
+            this.limit = limit;
+        }
+        refilter(limit);
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    private void refilter(int capacity) {
+        int oldSize = visible.size();
+        Ring lines = new Ring(capacity);
+        for (int i = Math.max(0, all.size() - capacity); i < all.size(); i++)
+            lines.add(all.get(i));
+        all = lines;
+        visible = new Ring(capacity);
+        for (int i = 0; i < all.size(); i++) {
+            if (shows(all.get(i)))
+                visible.add(all.get(i));
+        }
+        if (oldSize > 0)
+            fireIntervalRemoved(this, 0, oldSize - 1);
+        if (visible.size() > 0)
+            fireIntervalAdded(this, 0, visible.size() - 1);
+    }
+
+    /**
+     * Removes all lines, including queued ones. Called on the event dispatch thread.
+     */
+    public void clear() {
+        synchronized (pending) {
+            pending.clear();
+        }
+        int oldSize = visible.size();
+        all.clear();
+        visible.clear();
+        if (oldSize > 0)
+            fireIntervalRemoved(this, 0, oldSize - 1);
+    }
+
+    @Override
+    public int getSize() {
+        return visible.size();
+    }
+
+    @Override
+    public String getElementAt(int index) {
+        return visible.get(index).text;
+    }
+}
@@ -0,0 +1,120 @@
+package com.myronalgebra.logger;
+
+/**
+ * A message captured on the calling thread and written later by the async writer or
+ * a LogAppender. The format and items are kept as passed; they are formatted when the
+ * record is written, so items should not be modified after they have been logged.
+ * A record of Logger.logText holds a copy of the text instead and has the format %s.
+ */
+public final class LogRecord {
+    final long millis;
+    final Logger.LogLevel level;
+    final Exception exception;
+    final String format;
+    /** null if the items are item1 to item3 */
+    final Object[] items;
+    final int count;
+    final Object item1;
+    final Object item2;
+    final Object item3;
+    /** the message of Logger.logText, or null */
+    final char[] text;
+
+    LogRecord(Logger.LogLevel level, char[] text) {
+        this(level, null, "%s", null, 1, null, null, null, text);
+    }
+
+    LogRecord(Logger.LogLevel level, Exception exception, String format, Object[] items, int count, Object item1, Object item2, Object item3) {
+        this(level, exception, format, items, count, item1, item2, item3, null);
+    }
+
+    private LogRecord(Logger.LogLevel level, Exception exception, String format, Object[] items, int count, Object item1, Object item2, Object item3, char[] text) {
+        this.millis = System.currentTimeMillis();
+        this.level = level;
+        this.exception = exception;
+        this.format = format;
+        this.items = items;
+        this.count = count;
+        this.item1 = item1;
+        this.item2 = item2;
+        this.item3 = item3;
+        this.text = text;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    public Logger.LogLevel getLevel() {
+        return level;
+    }
+
+    /**
+     * @return the exception passed to Logger.error(Exception, ...) or null
+     */
+    public Exception getException() {
+        return exception;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    /**
+     * @return a copy of the items
+     */
+    public Object[] getItems() {
+        Object[] copy = new Object[itemCount()];
+        for (int i = 0; i < copy.length; i++)
+            copy[i] = item(i);
+        return copy;
+    }
+
+    /**
+     * @return the formatted message without timestamp and level
+     */
+    public String getMessage() {
+        if (text != null)
+            return new String(text);
+        StringBuilder sb = new StringBuilder();
+        Logger.appendMessage(sb, exceptionText(), format, items, count, item1, item2, item3);
+        return sb.toString();
+    }
+
+    int itemCount() {
+        return items != null ? items.length : count;
+    }
+
+    Object item(int i) {
+        if (text != null)
+            return new String(text);
+        return items != null ? items[i] : i == 0 ? item1 : i == 1 ? item2 : item3;
+    }
+
+    /**
+     * @return the text that precedes the message of an exception, or null
+     */
+    String exceptionText() {
+        return exception == null ? null : exception.getClass().getSimpleName() + " " + exception.getMessage();
+    }
+
+    /**
+     * Appends the line as the synchronous Logger would print it, including the line separator.
+     */
+    void appendTo(StringBuilder sb, TimestampFormatter timestamps) {
+        if (text != null) {
+            timestamps.appendTo(sb, millis);
+            sb.append(" [").append(level).append("] ").append(text).append(System.lineSeparator());
+            return;
+        }
+        appendLine(sb, timestamps, millis, level, exceptionText(), format, items, count, item1, item2, item3);
+    }
+
+    static void appendLine(StringBuilder sb, TimestampFormatter timestamps, long millis, Logger.LogLevel level, String exception,
+                           String format, Object[] items, int count, Object item1, Object item2, Object item3) {
+        timestamps.appendTo(sb, millis);
+        sb.append(" [").append(level).append("] ");
+        Logger.appendMessage(sb, exception, format, items, count, item1, item2, item3);
+        sb.append(System.lineSeparator());
+    }
+}
@@ -1,53 +1,108 @@
 package com.myronalgebra.logger;
 
-import javax.swing.*;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.util.function.Consumer;
 
 /**
- * Provides a PrintStream that writes to a JTextArea.
+ * Provides a PrintStream that collects what is printed into lines and adds them to a
+ * LogListModel. It may be printed to from any thread; the model updates the UI.
  */
 public class LogStream extends PrintStream {
     Consumer<String> listener;
-    private JTextArea textArea;
+    private final LogListModel model;
+    private final StringBuilder line = new StringBuilder();
 
-    public LogStream(JTextArea textArea) {
-        super(System.out);
-        this.textArea = textArea;
+    public LogStream(LogListModel model) {
+        super(OutputStream.nullOutputStream());
+        this.model = model;
     }
 
+    /**
+     * @param listener called with every completed line on the printing thread
+     */
     public void setListener(Consumer<String> listener) {
         this.listener = listener;
     }
 
-     @Override
+    public LogListModel getModel() {
+        return model;
+    }
+
+    @Override
     public void print(String s) {
-        textArea.append(s);
-//        if (listener != null)
-//            listener.accept(s);
+        collect(String.valueOf(s));
     }
 
     @Override
-    public void println(String s) {
-        textArea.append(s);
-        textArea.append("\n");
-        if (listener != null)
-            listener.accept(s);
+    public void print(char[] s) {
+        collect(new String(s));
     }
 
     @Override
     public void print(Object obj) {
-        textArea.append(String.valueOf(obj));
+        collect(String.valueOf(obj));
     }
 
     @Override
-    public void flush() {
-        textArea.setSelectionStart(Integer.MAX_VALUE);
-        textArea.setSelectionEnd(Integer.MAX_VALUE);
+    public void println() {
+        endLine();
+    }
 
+    @Override
+    public void println(String s) {
+        synchronized (this) {
+            collect(String.valueOf(s));
+            endLine();
+        }
+    }
+
+    @Override
+    public void println(Object obj) {
+        println(String.valueOf(obj));
+    }
+
+    @Override
+    public void write(int b) {
+        collect(String.valueOf((char) b));
+    }
+
+    @Override
+    public void write(byte[] buf, int off, int len) {
+        collect(new String(buf, off, len));
+    }
+
+    /**
+     * Lines are passed to the model as they are completed, so there is nothing to flush.
+     */
+    @Override
+    public void flush() {
     }
 
     public void clear() {
-        textArea.setText("");
+        model.clear();
+    }
+
+    private synchronized void collect(CharSequence text) {
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                line.append(text, start, i);
+                endLine();
+                start = i + 1;
+            }
+        }
+        line.append(text, start, text.length());
+    }
+
+    private synchronized void endLine() {
+        int length = line.length();
+        if (length > 0 && line.charAt(length - 1) == '\r')
+            line.setLength(length - 1);
+        String s = line.toString();
+        line.setLength(0);
+        model.add(s);
+        if (listener != null)
+            listener.accept(s);
     }
 }
@@ -1,106 +1,119 @@
 package com.myronalgebra.logger;
 
 import java.io.*;
+import java.nio.CharBuffer;
 
 /**
  * Captures PrintWriter output and redirects it to Logger.
- * Most print methods are handled by the super class which is
- * provided at construction with a string-backed writer.
- * println() is overridden to write the buffer to the com.myronalgebra.logger
- * and clear the buffer.
+ * Every line written, by println or by text containing line separators, is
+ * logged as one message. The text is logged as it is, so it may contain % or {}.
  */
 public class LogWriter extends PrintWriter {
 
     Logger.LogLevel logLevel;
 
     public LogWriter(Logger.LogLevel logLevel) {
-        super(new StringWriter());
+        super(new LineWriter(logLevel));
         this.logLevel = logLevel;
     }
-
-    public void println() {
-        Logger.log(logLevel, out.toString());
-        ((StringWriter)out).clear();
-    }
 }
 
 /**
- * Identical to java.io.StringWriter with an added clear() method.
- * This wouldn't be necessary if the original programmer had made
- * buf protected instead of private. Asshole.
+ * Collects characters into lines in a reusable buffer and passes each completed line
+ * to Logger.logText as a view of the buffer, without creating a String. A line ends at
+ * \n; a \r before it is dropped. An unfinished line is logged when the writer is closed.
+ * Calls are serialized by the PrintWriter, which locks this writer.
  */
-class StringWriter extends Writer {
-    private StringBuffer buf;
-
-    public StringWriter() {
-        this.buf = new StringBuffer();
-        this.lock = this.buf;
-    }
+class LineWriter extends Writer {
+    private final Logger.LogLevel logLevel;
+    private char[] buf = new char[256];
+    private CharBuffer view = CharBuffer.wrap(buf);
+    private int length;
 
-    public StringWriter(int initialSize) {
-        if (initialSize < 0) {
-            throw new IllegalArgumentException("Negative buffer size");
-        } else {
-            this.buf = new StringBuffer(initialSize);
-            this.lock = this.buf;
-        }
+    LineWriter(Logger.LogLevel logLevel) {
+        this.logLevel = logLevel;
     }
 
+    @Override
     public void write(int c) {
-        this.buf.append((char)c);
+        if (c == '\n')
+            endLine();
+        else
+            put((char) c);
     }
 
+    @Override
     public void write(char[] cbuf, int off, int len) {
-        if (off >= 0 && off <= cbuf.length && len >= 0 && off + len <= cbuf.length && off + len >= 0) {
-            if (len != 0) {
-                this.buf.append(cbuf, off, len);
-            }
-        } else {
+        if (off < 0 || len < 0 || off + len > cbuf.length || off + len < 0)
             throw new IndexOutOfBoundsException();
+        int start = off;
+        int end = off + len;
+        for (int i = off; i < end; i++) {
+            if (cbuf[i] == '\n') {
+                put(cbuf, start, i - start);
+                endLine();
+                start = i + 1;
+            }
         }
+        put(cbuf, start, end - start);
     }
 
-    public void write(String str) {
-        this.buf.append(str);
-    }
-
+    @Override
     public void write(String str, int off, int len) {
-        this.buf.append(str, off, off + len);
+        int end = off + len;
+        int start = off;
+        int newline;
+        while ((newline = str.indexOf('\n', start)) >= 0 && newline < end) {
+            put(str, start, newline);
+            endLine();
+            start = newline + 1;
+        }
+        put(str, start, end);
     }
 
-    public StringWriter append(CharSequence csq) {
-        this.write(String.valueOf(csq));
-        return this;
+    private void put(char c) {
+        ensure(1);
+        buf[length++] = c;
     }
 
-    public StringWriter append(CharSequence csq, int start, int end) {
-        if (csq == null) {
-            csq = "null";
-        }
-
-        return this.append(((CharSequence)csq).subSequence(start, end));
+    private void put(char[] cbuf, int off, int len) {
+        ensure(len);
+        System.arraycopy(cbuf, off, buf, length, len);
+        length += len;
     }
 
-    public StringWriter append(char c) {
-        this.write(c);
-        return this;
+    private void put(String str, int start, int end) {
+        ensure(end - start);
+        str.getChars(start, end, buf, length);
+        length += end - start;
     }
 
-    public String toString() {
-        return this.buf.toString();
+    private void ensure(int more) {
+        if (length + more > buf.length) {
+            char[] larger = new char[Math.max(buf.length * 2, length + more)];
+            System.arraycopy(buf, 0, larger, 0, length);
+            buf = larger;
+            view = CharBuffer.wrap(buf);
+        }
     }
 
-    public StringBuffer getBuffer() {
-        return this.buf;
+    private void endLine() {
+        int end = length > 0 && buf[length - 1] == '\r' ? length - 1 : length;
+        view.clear().limit(end);
+        Logger.logText(logLevel, view);
+        length = 0;
     }
 
+    /**
+     * Lines are logged as they are completed; an unfinished line stays in the buffer.
+     */
+    @Override
     public void flush() {
     }
 
-    public void close() throws IOException {
-    }
-
-    public void clear() {
-        buf.setLength(0);
+    @Override
+    public void close() {
+        if (length > 0)
+            endLine();
     }
 }
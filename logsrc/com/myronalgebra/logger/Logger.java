@@ -1,19 +1,41 @@
 package com.myronalgebra.logger;
 
+import java.io.BufferedOutputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintStream;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.nio.CharBuffer;
 import java.util.function.Supplier;
 
 /**
  * Provides methods to write a timestamped message to a PrintStream filtered by
  * LogLevel.
+ * <p>Formats are those of String.format; formats with only %s and %d, or with {} placeholders
+ * and no % conversions, are parsed once and rendered without String.format. The level is
+ * checked before anything else, and the overloads with one to three items need no varargs
+ * array, so a disabled message costs only the check.</p>
+ * <p>By default a message is written and flushed on the calling thread. After setAsync,
+ * callers only enqueue the message and a background thread formats and writes it in
+ * batches; see AsyncLog.</p>
+ * <p>The static methods use the global level. Loggers obtained from get(Class) have
+ * levels of their own that are inherited by package; see NamedLogger.</p>
+ * <p>Messages go to the PrintStream unless a LogAppender has been set, e.g. a
+ * MappedFileAppender.</p>
  */
 public class Logger {
 
     private static PrintStream out = System.out;
+    private static volatile AsyncLog async;
+    private static volatile LogAppender appender;
+    private static boolean shutdownHook;
+
+    /**
+     * What a caller does when the async buffer is full.
+     * Block waits for space, Drop discards the message, and DropBelowLevel discards
+     * messages below a given level and waits with the others.
+     */
+    public enum BackPressure {Block, Drop, DropBelowLevel}
 
     public static PrintStream getPrintStream() {
         return out;
@@ -23,47 +45,315 @@ public class Logger {
         out = stream;
     }
 
+    /**
+     * Writes a message. The lines of concurrent callers are not interleaved because
+     * the timestamp, level and message are written while holding the stream's lock.
+     */
     public static void log(LogLevel logLevel, String format, Object ... items) {
+        if (isLogging(logLevel))
+            write(logLevel, null, format, items, 0, null, null, null);
+    }
+
+    public static void log(LogLevel logLevel, String format, Object item) {
+        if (isLogging(logLevel))
+            write(logLevel, null, format, null, 1, item, null, null);
+    }
+
+    public static void log(LogLevel logLevel, String format, Object item1, Object item2) {
+        if (isLogging(logLevel))
+            write(logLevel, null, format, null, 2, item1, item2, null);
+    }
+
+    public static void log(LogLevel logLevel, String format, Object item1, Object item2, Object item3) {
+        if (isLogging(logLevel))
+            write(logLevel, null, format, null, 3, item1, item2, item3);
+    }
+
+    public static void log(LogLevel logLevel, Supplier<String> supplier) {
         if (isLogging(logLevel)) {
-            timestamp();
+            write(logLevel, null, supplier.get(), null, 0, null, null, null);
+        }
+    }
+
+    public static boolean isLogging(LogLevel logLevel) {
+        return logLevel.ordinal() >= LoggerOptions.logLevel.ordinal();
+    }
+
+    /**
+     * @param type a class whose name, e.g. com.myronalgebra.xmltojava.XmlToJava, names the logger
+     * @return the logger of the class
+     */
+    public static NamedLogger get(Class<?> type) {
+        return NamedLogger.get(type.getName().replace('$', '.'));
+    }
+
+    /**
+     * @param name dot-separated name
+     * @return the logger with the name
+     */
+    public static NamedLogger get(String name) {
+        return NamedLogger.get(name);
+    }
+
+    /**
+     * Sets the global level, which applies to the static methods and to every named
+     * logger without a level of its own or of an ancestor.
+     * @param logLevel
+     */
+    public static void setLevel(LogLevel logLevel) {
+        NamedLogger.setLevel(null, logLevel);
+    }
+
+    /**
+     * Sets the level of a logger and of the loggers below it, e.g. setLevel("com.myronalgebra.xmltojava", Trace).
+     * @param name logger or package name
+     * @param logLevel null to inherit the level of the parent again
+     */
+    public static void setLevel(String name, LogLevel logLevel) {
+        NamedLogger.setLevel(name, logLevel);
+    }
+
+    /**
+     * @param name logger or package name
+     * @return the level set for exactly that name, or null if it inherits its level
+     */
+    public static LogLevel getLevel(String name) {
+        return NamedLogger.getLevel(name);
+    }
+
+    public static void log(LogLevel logLevel, Exception e, String format, Object ... items) {
+        if (isLogging(logLevel))
+            write(logLevel, e, format, items, 0, null, null, null);
+    }
+
+    /**
+     * Logs text as it is. Unlike the format methods, % and {} in the text have no meaning.
+     * The text is copied before this method returns, so it may be a reused buffer.
+     * @param logLevel
+     * @param text the message without line separator
+     */
+    public static void logText(LogLevel logLevel, CharSequence text) {
+        if (!isLogging(logLevel))
+            return;
+        AsyncLog async = Logger.async;
+        LogAppender appender = Logger.appender;
+        if (async != null || appender != null) {
+            LogRecord record = new LogRecord(logLevel, toChars(text));
+            if (async != null) {
+                async.enqueue(record);
+                return;
+            }
+            synchronized (appender) {
+                append(appender, record);
+                flush(appender);
+            }
+            return;
+        }
+        // PrintStream prints only Strings; the one copy needed is made here
+        String message = text.toString();
+        PrintStream out = Logger.out;
+        synchronized (out) {
+            timestamp(out);
             out.print("[");
             out.print(logLevel);
             out.print("] ");
-            try {
-                out.println(String.format(format, items));
-            } catch (Throwable e) {
-                out.println(String.format("error logging message %s", format));
+            out.println(message);
+            out.flush();
+        }
+    }
+
+    private static char[] toChars(CharSequence text) {
+        char[] chars = new char[text.length()];
+        if (text instanceof String) {
+            ((String) text).getChars(0, chars.length, chars, 0);
+        } else if (text instanceof StringBuilder) {
+            ((StringBuilder) text).getChars(0, chars.length, chars, 0);
+        } else if (text instanceof CharBuffer) {
+            ((CharBuffer) text).duplicate().get(chars);
+        } else {
+            for (int i = 0; i < chars.length; i++)
+                chars[i] = text.charAt(i);
+        }
+        return chars;
+    }
+
+    /**
+     * Enqueues or writes an enabled message. Items are taken from items if it is not null,
+     * otherwise the first count of item1 to item3 are used.
+     */
+    static void write(LogLevel logLevel, Exception e, String format, Object[] items, int count, Object item1, Object item2, Object item3) {
+        AsyncLog async = Logger.async;
+        if (async != null) {
+            async.enqueue(new LogRecord(logLevel, e, format, items, count, item1, item2, item3));
+            return;
+        }
+        LogAppender appender = Logger.appender;
+        if (appender != null) {
+            LogRecord record = new LogRecord(logLevel, e, format, items, count, item1, item2, item3);
+            synchronized (appender) {
+                append(appender, record);
+                flush(appender);
             }
+            return;
+        }
+        StringBuilder sb = messages.get();
+        sb.setLength(0);
+        appendMessage(sb, e == null ? null : e.getClass().getSimpleName() + " " + e.getMessage(), format, items, count, item1, item2, item3);
+        String message = sb.toString();
+        PrintStream out = Logger.out;
+        synchronized (out) {
+            timestamp(out);
+            out.print("[");
+            out.print(logLevel);
+            out.print("] ");
+            out.println(message);
             out.flush();
         }
     }
 
-    public static void log(LogLevel logLevel, Supplier<String> supplier) {
-        if (isLogging(logLevel)) {
-            log(logLevel, supplier.get());
+    static void append(LogAppender appender, LogRecord record) {
+        try {
+            appender.append(record);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Logger: " + appender.getClass().getSimpleName() + " failed: " + e);
         }
     }
 
-    public static boolean isLogging(LogLevel logLevel) {
-        return logLevel.ordinal() >= LoggerOptions.logLevel.ordinal();
+    static void flush(LogAppender appender) {
+        try {
+            appender.flush();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Logger: " + appender.getClass().getSimpleName() + " failed: " + e);
+        }
     }
 
-    public static void log(LogLevel logLevel, Exception e, String format, Object ... items) {
-        timestamp();
-        out.print("[");
-        out.print(logLevel);
-        out.print("] ");
-        out.println(e.getClass().getSimpleName() + " " + e.getMessage() + " " +String.format(format, items));
+    /**
+     * Appends the text of a message without timestamp and level.
+     * @param exception class name and message of an exception, or null
+     */
+    static void appendMessage(StringBuilder sb, String exception, String format, Object[] items, int count, Object item1, Object item2, Object item3) {
+        int start = sb.length();
+        try {
+            if (exception != null)
+                sb.append(exception).append(' ');
+            MessageTemplate.of(format).appendTo(sb, items, count, item1, item2, item3);
+        } catch (Throwable t) {
+            sb.setLength(start);
+            sb.append("error logging message ").append(format);
+        }
+    }
+
+    /**
+     * Sends messages to an appender instead of the PrintStream. Messages already logged
+     * asynchronously are written to the previous destination first, and a previous
+     * appender is closed.
+     * @param appender the new destination, or null for the PrintStream
+     */
+    public static synchronized void setAppender(LogAppender appender) {
+        flush();
+        LogAppender previous = Logger.appender;
+        Logger.appender = appender;
+        if (previous != null) {
+            synchronized (previous) {
+                try {
+                    previous.close();
+                } catch (IOException e) {
+                    System.err.println("Logger: closing " + previous.getClass().getSimpleName() + " failed: " + e);
+                }
+            }
+        }
+    }
+
+    static LogAppender getAppender() {
+        return appender;
+    }
+
+    /**
+     * Writes messages on a background thread from now on. Messages logged before the call
+     * are written first.
+     * @param capacity maximum number of messages waiting to be written
+     * @param backPressure what callers do when capacity messages are waiting; for
+     *                     DropBelowLevel, messages below Warning are dropped
+     */
+    public static void setAsync(int capacity, BackPressure backPressure) {
+        setAsync(capacity, backPressure, LogLevel.Warning);
+    }
+
+    /**
+     * @param capacity maximum number of messages waiting to be written
+     * @param backPressure what callers do when capacity messages are waiting
+     * @param keepLevel for DropBelowLevel, the lowest level that is never dropped
+     */
+    public static synchronized void setAsync(int capacity, BackPressure backPressure, LogLevel keepLevel) {
+        AsyncLog previous = async;
+        if (previous != null)
+            previous.close();
+        async = new AsyncLog(capacity, backPressure, keepLevel);
+        if (!shutdownHook) {
+            Runtime.getRuntime().addShutdownHook(new Thread(Logger::flush, "Logger shutdown"));
+            shutdownHook = true;
+        }
+    }
+
+    /**
+     * Writes the waiting messages and writes on the calling thread from now on.
+     */
+    public static synchronized void setSync() {
+        AsyncLog previous = async;
+        if (previous != null)
+            previous.close();
+        async = null;
+    }
+
+    /**
+     * In async mode, waits until the messages logged so far have been written.
+     */
+    public static void flush() {
+        AsyncLog async = Logger.async;
+        if (async != null)
+            async.flush();
+    }
+
+    /**
+     * @return number of messages dropped by the current async writer; 0 in sync mode
+     */
+    public static long getDroppedCount() {
+        AsyncLog async = Logger.async;
+        return async == null ? 0 : async.getDroppedCount();
     }
 
     public static void error(String format, Object ... items) {
         log(LogLevel.Error, format, items);
     }
 
+    public static void error(String format, Object item) {
+        log(LogLevel.Error, format, item);
+    }
+
+    public static void error(String format, Object item1, Object item2) {
+        log(LogLevel.Error, format, item1, item2);
+    }
+
+    public static void error(String format, Object item1, Object item2, Object item3) {
+        log(LogLevel.Error, format, item1, item2, item3);
+    }
+
     public static void success(String format, Object ... items) {
         log(LogLevel.Success, format, items);
     }
 
+    public static void success(String format, Object item) {
+        log(LogLevel.Success, format, item);
+    }
+
+    public static void success(String format, Object item1, Object item2) {
+        log(LogLevel.Success, format, item1, item2);
+    }
+
+    public static void success(String format, Object item1, Object item2, Object item3) {
+        log(LogLevel.Success, format, item1, item2, item3);
+    }
+
     public static void error(Exception e, String format, Object ... items) {
         log(LogLevel.Error, e, format, items);
     }
@@ -72,14 +362,50 @@ public class Logger {
         log(LogLevel.Info, format, items);
     }
 
+    public static void info(String format, Object item) {
+        log(LogLevel.Info, format, item);
+    }
+
+    public static void info(String format, Object item1, Object item2) {
+        log(LogLevel.Info, format, item1, item2);
+    }
+
+    public static void info(String format, Object item1, Object item2, Object item3) {
+        log(LogLevel.Info, format, item1, item2, item3);
+    }
+
     public static void warn(String format, Object ... items) {
         log(LogLevel.Warning, format, items);
     }
 
+    public static void warn(String format, Object item) {
+        log(LogLevel.Warning, format, item);
+    }
+
+    public static void warn(String format, Object item1, Object item2) {
+        log(LogLevel.Warning, format, item1, item2);
+    }
+
+    public static void warn(String format, Object item1, Object item2, Object item3) {
+        log(LogLevel.Warning, format, item1, item2, item3);
+    }
+
     public static void trace(String format, Object ... items) {
         log(LogLevel.Trace, format, items);
     }
 
+    public static void trace(String format, Object item) {
+        log(LogLevel.Trace, format, item);
+    }
+
+    public static void trace(String format, Object item1, Object item2) {
+        log(LogLevel.Trace, format, item1, item2);
+    }
+
+    public static void trace(String format, Object item1, Object item2, Object item3) {
+        log(LogLevel.Trace, format, item1, item2, item3);
+    }
+
     /**
      * Logs trace data using lazy evaluation.
      *
@@ -89,11 +415,11 @@ public class Logger {
         log(LogLevel.Trace, supplier);
     }
 
-    private static SimpleDateFormat dformat = new SimpleDateFormat("yyyy-MM-dd hh:mm:ss.SSS");
+    private static final ThreadLocal<StringBuilder> messages = ThreadLocal.withInitial(() -> new StringBuilder(256));
+    private static final ThreadLocal<TimestampFormatter> timestamps = ThreadLocal.withInitial(TimestampFormatter::new);
 
-    private static void timestamp() {
-        Date date = new Date(System.currentTimeMillis());
-        out.print(dformat.format(date));
+    private static void timestamp(PrintStream out) {
+        out.print(timestamps.get().format(System.currentTimeMillis()));
         out.print(" ");
     }
 
@@ -102,7 +428,7 @@ public class Logger {
             if (filename.equals("-"))
                 out = System.out;
             else
-                out = new PrintStream(new FileOutputStream(filename));
+                out = new PrintStream(new BufferedOutputStream(new FileOutputStream(filename), 8192));
         } catch (FileNotFoundException e) {
             error(e, "Logger.setLogFile %s", filename);
         }
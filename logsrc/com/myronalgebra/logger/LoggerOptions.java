@@ -1,6 +1,10 @@
 package com.myronalgebra.logger;
 
 public class LoggerOptions {
+    /**
+     * The global level, used by Logger and by named loggers without a level of their own.
+     * It may be assigned directly or set with Logger.setLevel.
+     */
     public static Logger.LogLevel logLevel = Logger.LogLevel.Error;
     private static String logFilename;
     public static void setLogFile(String logFile) {
@@ -0,0 +1,282 @@
+package com.myronalgebra.logger;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes log records into memory-mapped segment files.
+ * <p>A segment is a file of a fixed size mapped into memory; appending a record copies
+ * its bytes into the mapping, so there is no system call per message and the operating
+ * system writes the pages back in the background. A new segment is started when a record
+ * does not fit, or when the roll interval has passed. A closed segment is truncated to
+ * the bytes written. Segments are named name-00001.log, name-00002.log and so on,
+ * continuing after the highest number already in the directory.</p>
+ * <p>By default segments contain the same text Logger prints. In binary mode a segment
+ * starts with a header and contains one definition per format it uses, followed by
+ * records holding the time, level, format id and typed items, so messages are not
+ * formatted while logging. Binary segments end in .blog and are rendered by LogDecoder.</p>
+ * <pre>
+ * Logger.setAppender(new MappedFileAppender(Paths.get("logs"), "app").binary(true));
+ * </pre>
+ */
+public class MappedFileAppender implements LogAppender {
+    static final int MAGIC = 0x584c4f47;   // XLOG
+    static final byte VERSION = 1;
+    static final byte TEMPLATE = 'T';
+    static final byte RECORD = 'R';
+    static final byte NULL = 0;
+    static final byte LONG = 1;
+    static final byte DOUBLE = 2;
+    static final byte FLOAT = 3;
+    static final byte BOOLEAN = 4;
+    static final byte STRING = 5;
+    static final byte BIG_INTEGER = 6;
+
+    private final Path directory;
+    private final String name;
+    private long segmentSize = 64L << 20;
+    private long rollMillis;
+    private boolean binary;
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int sequence = -1;
+    private long segmentEnd;
+    private final Map<String, Integer> templates = new HashMap<>();
+    private final StringBuilder line = new StringBuilder(256);
+    private final TimestampFormatter timestamps = new TimestampFormatter();
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private ByteBuffer scratch = ByteBuffer.allocate(1024);
+
+    /**
+     * @param directory where segments are created
+     * @param name prefix of the segment file names
+     */
+    public MappedFileAppender(Path directory, String name) {
+        this.directory = directory;
+        this.name = name;
+    }
+
+    /**
+     * @param bytes size of a segment; 64MB by default
+     * @return this
+     */
+    public MappedFileAppender segmentSize(long bytes) {
+        if (bytes < 64 || bytes > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("segment size must be between 64 bytes and 2GB");
+        segmentSize = bytes;
+        return this;
+    }
+
+    /**
+     * @param millis time after which a new segment is started; 0, the default, to roll by size only
+     * @return this
+     */
+    public MappedFileAppender rollEvery(long millis) {
+        rollMillis = millis;
+        return this;
+    }
+
+    /**
+     * @param binary true to write the binary format instead of text
+     * @return this
+     */
+    public MappedFileAppender binary(boolean binary) {
+        this.binary = binary;
+        return this;
+    }
+
+    @Override
+    public void append(LogRecord record) throws IOException {
+        if (buffer == null || rollMillis > 0 && record.millis >= segmentEnd)
+            roll(record.millis);
+        if (binary)
+            appendBinary(record);
+        else
+            appendText(record);
+    }
+
+    /**
+     * Does nothing: written records are in the page cache and survive the process.
+     * Segments are forced to disk when they are closed.
+     */
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeSegment();
+    }
+
+    private void appendText(LogRecord record) throws IOException {
+        line.setLength(0);
+        record.appendTo(line, timestamps);
+        if (!encode(line)) {
+            roll(record.millis);
+            if (!encode(line))
+                throw new IOException("log record larger than segment");
+        }
+    }
+
+    /**
+     * @return false, leaving the buffer unchanged, if the text does not fit
+     */
+    private boolean encode(CharSequence text) {
+        int start = buffer.position();
+        encoder.reset();
+        CoderResult result = encoder.encode(CharBuffer.wrap(text), buffer, true);
+        if (!result.isOverflow())
+            result = encoder.flush(buffer);
+        if (result.isOverflow()) {
+            buffer.position(start);
+            return false;
+        }
+        return true;
+    }
+
+    private void appendBinary(LogRecord record) throws IOException {
+        scratch.clear();
+        putString(record.exceptionText());
+        int count = record.itemCount();
+        putInt(count);
+        for (int i = 0; i < count; i++)
+            putItem(record.item(i));
+        scratch.flip();
+        int recordLength = 1 + 8 + 1 + 4 + scratch.remaining();
+        Integer id = templates.get(record.format);
+        int needed = recordLength + (id == null ? templateLength(record.format) : 0);
+        if (needed > buffer.remaining()) {
+            roll(record.millis);
+            id = null;
+            needed = recordLength + templateLength(record.format);
+            if (needed > buffer.remaining())
+                throw new IOException("log record larger than segment");
+        }
+        if (id == null) {
+            id = templates.size();
+            templates.put(record.format, id);
+            byte[] format = record.format.getBytes(StandardCharsets.UTF_8);
+            buffer.put(TEMPLATE).putInt(id).putInt(format.length).put(format);
+        }
+        buffer.put(RECORD).putLong(record.millis).put((byte) record.level.ordinal()).putInt(id).put(scratch);
+    }
+
+    private static int templateLength(String format) {
+        return 1 + 4 + 4 + format.length() * 3;
+    }
+
+    private void putItem(Object item) {
+        if (item == null) {
+            ensure(1);
+            scratch.put(NULL);
+        } else if (item instanceof Integer || item instanceof Long || item instanceof Short || item instanceof Byte) {
+            ensure(9);
+            scratch.put(LONG).putLong(((Number) item).longValue());
+        } else if (item instanceof Double) {
+            ensure(9);
+            scratch.put(DOUBLE).putDouble((Double) item);
+        } else if (item instanceof Float) {
+            ensure(5);
+            scratch.put(FLOAT).putFloat((Float) item);
+        } else if (item instanceof Boolean) {
+            ensure(2);
+            scratch.put(BOOLEAN).put((byte) ((Boolean) item ? 1 : 0));
+        } else {
+            ensure(1);
+            scratch.put(item instanceof BigInteger ? BIG_INTEGER : STRING);
+            putString(String.valueOf(item));
+        }
+    }
+
+    private void putString(String s) {
+        if (s == null) {
+            putInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        putInt(bytes.length);
+        ensure(bytes.length);
+        scratch.put(bytes);
+    }
+
+    private void putInt(int value) {
+        ensure(4);
+        scratch.putInt(value);
+    }
+
+    private void ensure(int bytes) {
+        if (scratch.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(scratch.capacity() * 2, scratch.position() + bytes));
+            scratch.flip();
+            larger.put(scratch);
+            scratch = larger;
+        }
+    }
+
+    private void roll(long millis) throws IOException {
+        closeSegment();
+        if (sequence < 0)
+            sequence = highestSequence();
+        Files.createDirectories(directory);
+        Path segment;
+        do {
+            segment = directory.resolve(String.format("%s-%05d%s", name, ++sequence, binary ? ".blog" : ".log"));
+        } while (Files.exists(segment));
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        segmentEnd = rollMillis > 0 ? millis + rollMillis : Long.MAX_VALUE;
+        templates.clear();
+        if (binary)
+            buffer.putInt(MAGIC).put(VERSION);
+    }
+
+    private int highestSequence() throws IOException {
+        int highest = 0;
+        if (!Files.isDirectory(directory))
+            return highest;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, name + "-*")) {
+            for (Path file : stream) {
+                String fileName = file.getFileName().toString();
+                int dot = fileName.lastIndexOf('.');
+                try {
+                    highest = Math.max(highest, Integer.parseInt(fileName.substring(name.length() + 1, dot < 0 ? fileName.length() : dot)));
+                } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+                    // not a segment
+                }
+            }
+        }
+        return highest;
+    }
+
+    private void closeSegment() throws IOException {
+        if (channel == null)
+            return;
+        try {
+            buffer.force();
+            channel.truncate(buffer.position());
+        } catch (IOException e) {
+            // some platforms cannot truncate a mapped file; readers stop at the first zero byte
+        } finally {
+            channel.close();
+            channel = null;
+            buffer = null;
+        }
+    }
+}
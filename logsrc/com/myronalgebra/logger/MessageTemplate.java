@@ -0,0 +1,150 @@
+package com.myronalgebra.logger;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Formattable;
+import java.util.List;
+import java.util.MissingFormatArgumentException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A log format parsed once into literal text and placeholders.
+ * <p>%s and %d are replaced by the next item, %% and %n are literal. A format without any
+ * % conversion may use {} placeholders instead. A format with any other conversion, or with
+ * flags, widths or indexes, is passed to String.format, so every format produces the same
+ * text as String.format would. Templates are cached per format string.</p>
+ */
+final class MessageTemplate {
+    private static final int MAX_CACHED = 4096;
+    private static final ConcurrentHashMap<String, MessageTemplate> cache = new ConcurrentHashMap<>();
+
+    private final String format;
+    /** one more literal than placeholders; null if the format needs String.format */
+    private final String[] literals;
+    /** 's', 'd' or '{' per placeholder */
+    private final char[] placeholders;
+
+    private MessageTemplate(String format) {
+        this.format = format;
+        List<String> literals = new ArrayList<>();
+        StringBuilder placeholders = new StringBuilder();
+        if (!parsePercent(format, literals, placeholders)) {
+            literals.clear();
+            placeholders.setLength(0);
+            if (format.indexOf('%') >= 0) {
+                this.literals = null;
+                this.placeholders = null;
+                return;
+            }
+            parseBraces(format, literals, placeholders);
+        }
+        this.literals = literals.toArray(new String[0]);
+        this.placeholders = placeholders.toString().toCharArray();
+    }
+
+    /**
+     * @param format a String.format format or a {} template
+     * @return the cached template of the format
+     */
+    static MessageTemplate of(String format) {
+        MessageTemplate template = cache.get(format);
+        if (template == null) {
+            template = new MessageTemplate(format);
+            if (cache.size() < MAX_CACHED)
+                cache.putIfAbsent(format, template);
+        }
+        return template;
+    }
+
+    /**
+     * @return false if the format has no % conversion or one that String.format must handle
+     */
+    private static boolean parsePercent(String format, List<String> literals, StringBuilder placeholders) {
+        StringBuilder literal = new StringBuilder();
+        boolean conversions = false;
+        for (int i = 0; i < format.length(); i++) {
+            char c = format.charAt(i);
+            if (c != '%') {
+                literal.append(c);
+                continue;
+            }
+            if (++i == format.length())
+                return false;
+            c = format.charAt(i);
+            if (c == '%') {
+                literal.append('%');
+            } else if (c == 'n') {
+                literal.append(System.lineSeparator());
+            } else if (c == 's' || c == 'd') {
+                literals.add(literal.toString());
+                literal.setLength(0);
+                placeholders.append(c);
+                conversions = true;
+            } else {
+                return false;
+            }
+        }
+        literals.add(literal.toString());
+        return conversions;
+    }
+
+    private static void parseBraces(String format, List<String> literals, StringBuilder placeholders) {
+        int start = 0;
+        int brace;
+        while ((brace = format.indexOf("{}", start)) >= 0) {
+            literals.add(format.substring(start, brace));
+            placeholders.append('{');
+            start = brace + 2;
+        }
+        literals.add(format.substring(start));
+    }
+
+    /**
+     * Appends the message. Items are taken from items if it is not null, otherwise the
+     * first count of item1 to item3 are used.
+     * @throws java.util.IllegalFormatException if String.format would throw it
+     */
+    void appendTo(StringBuilder sb, Object[] items, int count, Object item1, Object item2, Object item3) {
+        if (items != null)
+            count = items.length;
+        if (literals == null) {
+            sb.append(String.format(format, items != null ? items : copy(count, item1, item2, item3)));
+            return;
+        }
+        int start = sb.length();
+        for (int i = 0; i < placeholders.length; i++) {
+            sb.append(literals[i]);
+            char placeholder = placeholders[i];
+            if (i >= count) {
+                if (placeholder != '{')
+                    throw new MissingFormatArgumentException("%" + placeholder);
+                sb.append("{}");
+                continue;
+            }
+            Object item = items != null ? items[i] : i == 0 ? item1 : i == 1 ? item2 : item3;
+            if (placeholder == 'd' && item != null && !isIntegral(item) || placeholder == 's' && item instanceof Formattable) {
+                sb.setLength(start);
+                sb.append(String.format(format, items != null ? items : copy(count, item1, item2, item3)));
+                return;
+            }
+            sb.append(item);
+        }
+        sb.append(literals[placeholders.length]);
+    }
+
+    private static boolean isIntegral(Object item) {
+        return item instanceof Integer || item instanceof Long || item instanceof Short
+                || item instanceof Byte || item instanceof BigInteger;
+    }
+
+    private static Object[] copy(int count, Object item1, Object item2, Object item3) {
+        Object[] items = new Object[count];
+        if (count > 0)
+            items[0] = item1;
+        if (count > 1)
+            items[1] = item2;
+        if (count > 2)
+            items[2] = item3;
+        return items;
+    }
+}
@@ -0,0 +1,245 @@
+package com.myronalgebra.logger;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * A logger whose level can be set apart from the others, obtained from Logger.get.
+ * <p>Names are dot-separated like package names. A logger without a level of its own
+ * uses the level of its nearest ancestor, e.g. com.myronalgebra.xmltojava.XmlToJava uses
+ * the level set for com.myronalgebra.xmltojava, and a logger without any configured
+ * ancestor uses the global level of LoggerOptions.</p>
+ * <p>Each logger keeps its effective level in a volatile field that is recomputed for all
+ * loggers whenever a level is set, or when a check finds that LoggerOptions.logLevel was
+ * assigned directly, so checking a level costs two comparisons.</p>
+ */
+public final class NamedLogger {
+    private static final Map<String, NamedLogger> loggers = new ConcurrentHashMap<>();
+    // guarded by levels
+    private static final Map<String, Logger.LogLevel> levels = new HashMap<>();
+    // the global level the thresholds were computed from; written after them
+    private static volatile Logger.LogLevel global;
+
+    private final String name;
+    private volatile int threshold;
+
+    private NamedLogger(String name) {
+        this.name = name;
+    }
+
+    static NamedLogger get(String name) {
+        NamedLogger logger = loggers.get(name);
+        if (logger != null)
+            return logger;
+        synchronized (levels) {
+            return loggers.computeIfAbsent(name, n -> {
+                NamedLogger created = new NamedLogger(n);
+                created.threshold = created.effectiveLevel(LoggerOptions.logLevel).ordinal();
+                return created;
+            });
+        }
+    }
+
+    /**
+     * @param name logger or package name; null or "" for the global level
+     * @param level null to inherit the level of the parent
+     */
+    static void setLevel(String name, Logger.LogLevel level) {
+        synchronized (levels) {
+            if (name == null || name.isEmpty()) {
+                if (level == null)
+                    throw new IllegalArgumentException("the global level cannot be removed");
+                LoggerOptions.logLevel = level;
+            } else if (level == null) {
+                levels.remove(name);
+            } else {
+                levels.put(name, level);
+            }
+            refresh();
+        }
+    }
+
+    /**
+     * @return the level set for exactly this name or null
+     */
+    static Logger.LogLevel getLevel(String name) {
+        synchronized (levels) {
+            return levels.get(name);
+        }
+    }
+
+    /**
+     * Recomputes the cached level of every logger. Assigning LoggerOptions.logLevel is
+     * noticed by the next check without calling this.
+     */
+    public static void refresh() {
+        synchronized (levels) {
+            Logger.LogLevel level = LoggerOptions.logLevel;
+            for (NamedLogger logger : loggers.values())
+                logger.threshold = logger.effectiveLevel(level).ordinal();
+            global = level;
+        }
+    }
+
+    private Logger.LogLevel effectiveLevel(Logger.LogLevel global) {
+        String n = name;
+        while (true) {
+            Logger.LogLevel level = levels.get(n);
+            if (level != null)
+                return level;
+            int dot = n.lastIndexOf('.');
+            if (dot < 0)
+                return global;
+            n = n.substring(0, dot);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the level in effect for this logger
+     */
+    public Logger.LogLevel getLevel() {
+        if (LoggerOptions.logLevel != global)
+            refresh();
+        return Logger.LogLevel.values()[threshold];
+    }
+
+    public boolean isLogging(Logger.LogLevel logLevel) {
+        if (LoggerOptions.logLevel != global)
+            refresh();
+        return logLevel.ordinal() >= threshold;
+    }
+
+    public void log(Logger.LogLevel logLevel, String format, Object ... items) {
+        if (isLogging(logLevel))
+            Logger.write(logLevel, null, format, items, 0, null, null, null);
+    }
+
+    public void log(Logger.LogLevel logLevel, String format, Object item) {
+        if (isLogging(logLevel))
+            Logger.write(logLevel, null, format, null, 1, item, null, null);
+    }
+
+    public void log(Logger.LogLevel logLevel, String format, Object item1, Object item2) {
+        if (isLogging(logLevel))
+            Logger.write(logLevel, null, format, null, 2, item1, item2, null);
+    }
+
+    public void log(Logger.LogLevel logLevel, String format, Object item1, Object item2, Object item3) {
+        if (isLogging(logLevel))
+            Logger.write(logLevel, null, format, null, 3, item1, item2, item3);
+    }
+
+    public void log(Logger.LogLevel logLevel, Supplier<String> supplier) {
+        if (isLogging(logLevel))
+            Logger.write(logLevel, null, supplier.get(), null, 0, null, null, null);
+    }
+
+    public void log(Logger.LogLevel logLevel, Exception e, String format, Object ... items) {
+        if (isLogging(logLevel))
+            Logger.write(logLevel, e, format, items, 0, null, null, null);
+    }
+
+    public void error(String format, Object ... items) {
+        log(Logger.LogLevel.Error, format, items);
+    }
+
+    public void error(String format, Object item) {
+        log(Logger.LogLevel.Error, format, item);
+    }
+
+    public void error(String format, Object item1, Object item2) {
+        log(Logger.LogLevel.Error, format, item1, item2);
+    }
+
+    public void error(String format, Object item1, Object item2, Object item3) {
+        log(Logger.LogLevel.Error, format, item1, item2, item3);
+    }
+
+    public void error(Exception e, String format, Object ... items) {
+        log(Logger.LogLevel.Error, e, format, items);
+    }
+
+    public void success(String format, Object ... items) {
+        log(Logger.LogLevel.Success, format, items);
+    }
+
+    public void success(String format, Object item) {
+        log(Logger.LogLevel.Success, format, item);
+    }
+
+    public void success(String format, Object item1, Object item2) {
+        log(Logger.LogLevel.Success, format, item1, item2);
+    }
+
+    public void success(String format, Object item1, Object item2, Object item3) {
+        log(Logger.LogLevel.Success, format, item1, item2, item3);
+    }
+
+    public void warn(String format, Object ... items) {
+        log(Logger.LogLevel.Warning, format, items);
+    }
+
+    public void warn(String format, Object item) {
+        log(Logger.LogLevel.Warning, format, item);
+    }
+
+    public void warn(String format, Object item1, Object item2) {
+        log(Logger.LogLevel.Warning, format, item1, item2);
+    }
+
+    public void warn(String format, Object item1, Object item2, Object item3) {
+        log(Logger.LogLevel.Warning, format, item1, item2, item3);
+    }
+
+    public void info(String format, Object ... items) {
+        log(Logger.LogLevel.Info, format, items);
+    }
+
+    public void info(String format, Object item) {
+        log(Logger.LogLevel.Info, format, item);
+    }
+
+    public void info(String format, Object item1, Object item2) {
+        log(Logger.LogLevel.Info, format, item1, item2);
+    }
+
+    public void info(String format, Object item1, Object item2, Object item3) {
+        log(Logger.LogLevel.Info, format, item1, item2, item3);
+    }
+
+    public void trace(String format, Object ... items) {
+        log(Logger.LogLevel.Trace, format, items);
+    }
+
+    public void trace(String format, Object item) {
+        log(Logger.LogLevel.Trace, format, item);
+    }
+
+    public void trace(String format, Object item1, Object item2) {
+        log(Logger.LogLevel.Trace, format, item1, item2);
+    }
+
+    public void trace(String format, Object item1, Object item2, Object item3) {
+        log(Logger.LogLevel.Trace, format, item1, item2, item3);
+    }
+
+    /**
+     * Logs trace data using lazy evaluation.
+     *
+     * @param supplier will be evaluated only if logging at Trace level
+     */
+    public void trace(Supplier<String> supplier) {
+        log(Logger.LogLevel.Trace, supplier);
+    }
+
+    @Override
+    public String toString() {
+        return name + "[" + getLevel() + "]";
+    }
+}
@@ -0,0 +1,69 @@
+package com.myronalgebra.logger;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Formats times as yyyy-MM-dd hh:mm:ss.SSS into a reusable char buffer.
+ * <p>The date and time up to the second are rendered only when the second changes;
+ * within a second only the three millisecond digits are written, so formatting
+ * allocates nothing. An instance is not thread safe: Logger keeps one per thread
+ * and the async writer has its own.</p>
+ */
+final class TimestampFormatter {
+    static final int LENGTH = 23;
+
+    private final char[] buffer = new char[LENGTH];
+    private long second = Long.MIN_VALUE;
+
+    /**
+     * @param millis time since the epoch
+     * @return the formatted time; the buffer is overwritten by the next call
+     */
+    char[] format(long millis) {
+        long s = Math.floorDiv(millis, 1000);
+        if (s != second) {
+            renderSecond(s);
+            second = s;
+        }
+        int ms = Math.floorMod(millis, 1000);
+        buffer[20] = (char) ('0' + ms / 100);
+        buffer[21] = (char) ('0' + ms / 10 % 10);
+        buffer[22] = (char) ('0' + ms % 10);
+        return buffer;
+    }
+
+    /**
+     * @param sb receives the formatted time
+     * @param millis time since the epoch
+     */
+    void appendTo(StringBuilder sb, long millis) {
+        sb.append(format(millis), 0, LENGTH);
+    }
+
+    private void renderSecond(long s) {
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDateTime time = LocalDateTime.ofEpochSecond(s, 0, zone.getRules().getOffset(Instant.ofEpochSecond(s)));
+        int hour = time.getHour() % 12;
+        put(0, time.getYear(), 4);
+        buffer[4] = '-';
+        put(5, time.getMonthValue(), 2);
+        buffer[7] = '-';
+        put(8, time.getDayOfMonth(), 2);
+        buffer[10] = ' ';
+        put(11, hour == 0 ? 12 : hour, 2);
+        buffer[13] = ':';
+        put(14, time.getMinute(), 2);
+        buffer[16] = ':';
+        put(17, time.getSecond(), 2);
+        buffer[19] = '.';
+    }
+
+    private void put(int offset, int value, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
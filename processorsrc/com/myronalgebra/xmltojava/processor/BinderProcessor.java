@@ -0,0 +1,321 @@
+package com.myronalgebra.xmltojava.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Generates a Binder for every class annotated with @Bindable.
+ * <p>The binder assigns public fields directly and calls public setters, choosing between
+ * them as XmlToJava does: a field is assigned through a setter with exactly the field's type
+ * if there is one, and a setter without a field binds the property named in the setter.
+ * Simple values are parsed inline with parseInt and friends or the valueOf method of their
+ * class. Anything the binder does not handle, e.g. overloaded setters, is left to reflection.
+ * Because a binder is generated into the package of its class, it can also instantiate classes
+ * whose no-argument constructor is not public.</p>
+ * <p>The processor also writes a native-image reflection configuration so that XmlToJava can
+ * find the binders in a GraalVM native image.</p>
+ */
+@SupportedAnnotationTypes(BinderProcessor.BINDABLE)
+public class BinderProcessor extends AbstractProcessor {
+    static final String BINDABLE = "com.myronalgebra.xmltojava.Bindable";
+    private static final String NATIVE_IMAGE_CONFIG = "META-INF/native-image/com.myronalgebra/xmltojava-binders/reflect-config.json";
+
+    private final Map<String, String> generated = new TreeMap<>();
+    private Elements elements;
+    private Types types;
+
+    /**
+     * How one binding name is assigned.
+     */
+    private static class Assignment {
+        final String name;
+        final Element member;
+        final TypeMirror valueType;
+
+        Assignment(String name, Element member, TypeMirror valueType) {
+            this.name = name;
+            this.member = member;
+            this.valueType = valueType;
+        }
+
+        boolean isSetter() {
+            return member.getKind() == ElementKind.METHOD;
+        }
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+        elements = processingEnv.getElementUtils();
+        types = processingEnv.getTypeUtils();
+        TypeElement bindable = elements.getTypeElement(BINDABLE);
+        if (bindable != null) {
+            for (Element element : round.getElementsAnnotatedWith(bindable)) {
+                if (element.getKind() != ElementKind.CLASS) {
+                    error(element, "@Bindable applies to classes only");
+                } else if (!isAccessible(element)) {
+                    error(element, "@Bindable class must not be private or nested in a private class");
+                } else {
+                    generate((TypeElement) element);
+                }
+            }
+        }
+        if (round.processingOver() && !generated.isEmpty())
+            writeNativeImageConfig();
+        return true;
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private void generate(TypeElement type) {
+        String packageName = elements.getPackageOf(type).getQualifiedName().toString();
+        String binaryName = elements.getBinaryName(type).toString();
+        String binderName = binaryName.replace('$', '_') + "Binder";
+        String simpleName = binderName.substring(binderName.lastIndexOf('.') + 1);
+        String typeName = typeName(type.asType());
+        Collection<Assignment> assignments = assignments(type);
+
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(binderName, type);
+            try (PrintWriter out = new PrintWriter(file.openWriter())) {
+                if (!packageName.isEmpty()) {
+                    out.printf("package %s;%n%n", packageName);
+                }
+                out.printf("@javax.annotation.processing.Generated(\"%s\")%n", getClass().getName());
+                out.printf("@SuppressWarnings({\"unchecked\", \"rawtypes\"})%n");
+                out.printf("public final class %s implements com.myronalgebra.xmltojava.Binder<%s> {%n", simpleName, typeName);
+
+                out.printf("    @Override%n");
+                out.printf("    public %s newInstance() {%n", typeName);
+                out.printf("        return %s;%n", isInstantiable(type) ? "new " + typeName + "()" : "null");
+                out.printf("    }%n%n");
+
+                out.printf("    @Override%n");
+                out.printf("    public boolean assignText(%s target, String name, String text) {%n", typeName);
+                out.printf("        switch (name) {%n");
+                for (Assignment a : assignments) {
+                    String parsed = parse(a.valueType);
+                    if (parsed != null)
+                        writeCase(out, type, a, parsed);
+                }
+                out.printf("            default:%n");
+                out.printf("                return false;%n");
+                out.printf("        }%n");
+                out.printf("    }%n%n");
+
+                out.printf("    @Override%n");
+                out.printf("    public boolean assign(%s target, String name, Object value) {%n", typeName);
+                out.printf("        switch (name) {%n");
+                for (Assignment a : assignments)
+                    writeCase(out, type, a, "(" + boxedTypeName(a.valueType) + ") value");
+                out.printf("            default:%n");
+                out.printf("                return false;%n");
+                out.printf("        }%n");
+                out.printf("    }%n");
+                out.printf("}%n");
+            }
+            generated.put(binderName, binaryName);
+        } catch (IOException e) {
+            error(type, "cannot write " + binderName + ": " + e.getMessage());
+        }
+    }
+
+    private void writeCase(PrintWriter out, TypeElement type, Assignment a, String value) {
+        String receiver = a.member.getModifiers().contains(Modifier.STATIC) ? typeName(type.asType()) : "target";
+        out.printf("            case \"%s\":%n", a.name);
+        if (a.isSetter())
+            out.printf("                %s.%s(%s);%n", receiver, a.member.getSimpleName(), value);
+        else
+            out.printf("                %s.%s = %s;%n", receiver, a.member.getSimpleName(), value);
+        out.printf("                return true;%n");
+    }
+
+    /**
+     * Mirrors the bindings XmlToJava compiles for a class. Names bound by more than one
+     * setter are left out because reflection chooses among them.
+     */
+    private Collection<Assignment> assignments(TypeElement type) {
+        List<? extends Element> members = elements.getAllMembers(type);
+        Map<String, List<ExecutableElement>> settersByProperty = new LinkedHashMap<>();
+        List<ExecutableElement> methods = ElementFilter.methodsIn(members);
+        for (ExecutableElement m : methods) {
+            String name = m.getSimpleName().toString();
+            if (isPublic(m) && name.length() > 3 && name.startsWith("set") && m.getParameters().size() == 1)
+                settersByProperty.computeIfAbsent(name.substring(3), k -> new ArrayList<>()).add(m);
+        }
+
+        Map<String, Assignment> result = new LinkedHashMap<>();
+        Set<String> ambiguous = new HashSet<>();
+        for (Map.Entry<String, List<ExecutableElement>> entry : settersByProperty.entrySet()) {
+            String property = entry.getKey();
+            String lowerCase = property.substring(0, 1).toLowerCase() + property.substring(1);
+            if (entry.getValue().size() > 1) {
+                ambiguous.add(property);
+                ambiguous.add(lowerCase);
+                continue;
+            }
+            ExecutableElement setter = entry.getValue().get(0);
+            result.put(property, new Assignment(property, setter, setter.getParameters().get(0).asType()));
+        }
+        for (VariableElement f : ElementFilter.fieldsIn(members)) {
+            if (!isPublic(f))
+                continue;
+            String name = f.getSimpleName().toString();
+            Assignment existing = result.get(name);
+            if (existing != null && !existing.isSetter())
+                continue;
+            ExecutableElement setter = findSetter(methods, f);
+            if (setter != null) {
+                result.put(name, new Assignment(name, setter, f.asType()));
+            } else if (!f.getModifiers().contains(Modifier.FINAL)) {
+                result.put(name, new Assignment(name, f, f.asType()));
+            } else {
+                result.remove(name);
+            }
+            ambiguous.remove(name);
+        }
+        for (String name : ambiguous)
+            result.remove(name);
+        result.values().removeIf(a -> !isAccessible(a.valueType));
+        return result.values();
+    }
+
+    private ExecutableElement findSetter(List<ExecutableElement> methods, VariableElement field) {
+        String name = field.getSimpleName().toString();
+        String setterName = "set" + name.substring(0, 1).toUpperCase() + name.substring(1);
+        for (ExecutableElement m : methods) {
+            if (isPublic(m) && m.getSimpleName().contentEquals(setterName) && m.getParameters().size() == 1
+                    && types.isSameType(types.erasure(m.getParameters().get(0).asType()), types.erasure(field.asType())))
+                return m;
+        }
+        return null;
+    }
+
+    /**
+     * @param type type of a field or setter parameter
+     * @return an expression parsing the variable text into type, or null if type is not simple
+     */
+    private String parse(TypeMirror type) {
+        switch (type.getKind()) {
+            case INT:
+                return "Integer.parseInt(text)";
+            case LONG:
+                return "Long.parseLong(text)";
+            case SHORT:
+                return "Short.parseShort(text)";
+            case BYTE:
+                return "Byte.parseByte(text)";
+            case FLOAT:
+                return "Float.parseFloat(text)";
+            case DOUBLE:
+                return "Double.parseDouble(text)";
+            case BOOLEAN:
+                return "Boolean.parseBoolean(text)";
+            case DECLARED:
+                break;
+            default:
+                return null;
+        }
+        TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+        if (element.getQualifiedName().contentEquals("java.lang.String"))
+            return "text";
+        for (ExecutableElement m : ElementFilter.methodsIn(elements.getAllMembers(element))) {
+            if (m.getSimpleName().contentEquals("valueOf") && isPublic(m) && m.getModifiers().contains(Modifier.STATIC)
+                    && m.getParameters().size() == 1
+                    && types.isSameType(m.getParameters().get(0).asType(), elements.getTypeElement("java.lang.String").asType())
+                    && types.isAssignable(types.erasure(m.getReturnType()), types.erasure(type))) {
+                if (types.isSameType(types.erasure(m.getReturnType()), types.erasure(type)))
+                    return String.format("%s.valueOf(text)", typeName(element.asType()));
+                return String.format("(%s) %s.valueOf(text)", typeName(type), typeName(element.asType()));
+            }
+        }
+        return null;
+    }
+
+    private boolean isInstantiable(TypeElement type) {
+        if (type.getModifiers().contains(Modifier.ABSTRACT))
+            return false;
+        if (type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains(Modifier.STATIC))
+            return false;
+        for (ExecutableElement c : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (!c.getModifiers().contains(Modifier.PRIVATE) && c.getParameters().isEmpty())
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean isPublic(Element element) {
+        return element.getModifiers().contains(Modifier.PUBLIC);
+    }
+
+    private static boolean isAccessible(Element element) {
+        for (Element e = element; e != null && e.getKind() != ElementKind.PACKAGE; e = e.getEnclosingElement()) {
+            if (e.getModifiers().contains(Modifier.PRIVATE))
+                return false;
+        }
+        return true;
+    }
+
+    private boolean isAccessible(TypeMirror type) {
+        TypeMirror erased = types.erasure(type);
+        while (erased.getKind() == TypeKind.ARRAY)
+            erased = ((javax.lang.model.type.ArrayType) erased).getComponentType();
+        return erased.getKind() != TypeKind.DECLARED || isAccessible(((DeclaredType) erased).asElement());
+    }
+
+    /**
+     * @return the erased source name of a type, e.g. java.util.ArrayList or p.Outer.Inner
+     */
+    private String typeName(TypeMirror type) {
+        return types.erasure(type).toString();
+    }
+
+    private String boxedTypeName(TypeMirror type) {
+        if (type.getKind().isPrimitive())
+            return types.boxedClass((PrimitiveType) type).getQualifiedName().toString();
+        return typeName(type);
+    }
+
+    private void writeNativeImageConfig() {
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", NATIVE_IMAGE_CONFIG);
+            try (Writer out = file.openWriter()) {
+                out.write("[\n");
+                String separator = "";
+                for (Map.Entry<String, String> entry : generated.entrySet()) {
+                    out.write(separator);
+                    out.write("  {\"name\": \"" + entry.getKey() + "\", \"methods\": [{\"name\": \"<init>\", \"parameterTypes\": []}]},\n");
+                    out.write("  {\"name\": \"" + entry.getValue() + "\", \"allPublicFields\": true, \"allPublicMethods\": true, \"allPublicConstructors\": true}");
+                    separator = ",\n";
+                }
+                out.write("\n]\n");
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "cannot write " + NATIVE_IMAGE_CONFIG + ": " + e.getMessage());
+        }
+    }
+}
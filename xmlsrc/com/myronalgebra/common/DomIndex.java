@@ -0,0 +1,350 @@
+package com.myronalgebra.common;
+
+import org.w3c.dom.*;
+import org.w3c.dom.events.EventListener;
+import org.w3c.dom.events.EventTarget;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Indexes the elements of a Document by tag name, by attribute value and by parent and
+ * name, so the lookups of XmlUtil need not walk the tree.
+ * <p>Create the index with of(document); from then on the lookup helpers of XmlUtil use
+ * it for that document. The index is built on the first query. Documents that support
+ * DOM mutation events, such as those of the JDK parser, mark the index stale when a node
+ * is inserted or removed or an attribute changes, and the next query rebuilds it. Renaming
+ * an element with Document.renameNode raises no such event; call rebuild after it, and after
+ * changing documents that do not support the events. Rebuilding costs a walk of the whole
+ * document, so index documents that are queried much more often than they are changed.</p>
+ * <p>Queries may run on several threads as long as the document is not changed meanwhile.
+ * Elements outside the indexed tree, e.g. created but not yet inserted, are searched by
+ * walking as before.</p>
+ */
+public final class DomIndex {
+    private static final String KEY = DomIndex.class.getName();
+    private static final String[] MUTATIONS = {"DOMNodeInserted", "DOMNodeRemoved", "DOMAttrModified", "DOMSubtreeModified"};
+    private static volatile boolean used;
+
+    /**
+     * Where an element is: its number in document order, the number of its last descendant
+     * and its number among the element children of its parent.
+     */
+    private static final class Position {
+        final int order;
+        int last;
+        final int sibling;
+        Map<String, List<Element>> children;
+
+        Position(int order, int sibling) {
+            this.order = order;
+            this.sibling = sibling;
+        }
+    }
+
+    private static final class State {
+        final Map<Element, Position> positions = new IdentityHashMap<>();
+        final Map<String, List<Element>> byTag = new HashMap<>();
+        final Map<String, Map<String, List<Element>>> byAttr = new HashMap<>();
+    }
+
+    private final Document document;
+    private final EventListener listener = e -> state = null;
+    private final boolean tracking;
+    private volatile State state;
+
+    private DomIndex(Document document) {
+        this.document = document;
+        boolean tracking = false;
+        if (document instanceof EventTarget && document.getImplementation().hasFeature("MutationEvents", "2.0")) {
+            for (String type : MUTATIONS)
+                ((EventTarget) document).addEventListener(type, listener, true);
+            tracking = true;
+        }
+        this.tracking = tracking;
+    }
+
+    /**
+     * @param document
+     * @return the index of the document, created if it has none
+     */
+    public static DomIndex of(Document document) {
+        synchronized (document) {
+            DomIndex index = (DomIndex) document.getUserData(KEY);
+            if (index == null) {
+                index = new DomIndex(document);
+                document.setUserData(KEY, index, null);
+                used = true;
+            }
+            return index;
+        }
+    }
+
+    /**
+     * @param node
+     * @return the index of the node's document or null if it has none
+     */
+    static DomIndex find(Node node) {
+        if (!used)
+            return null;
+        Document document = node instanceof Document ? (Document) node : node.getOwnerDocument();
+        return document == null ? null : (DomIndex) document.getUserData(KEY);
+    }
+
+    /**
+     * Removes the index from its document; XmlUtil walks the document again.
+     */
+    public void remove() {
+        synchronized (document) {
+            if (tracking) {
+                for (String type : MUTATIONS)
+                    ((EventTarget) document).removeEventListener(type, listener, true);
+            }
+            document.setUserData(KEY, null, null);
+            state = null;
+        }
+    }
+
+    /**
+     * @return true if changes to the document are noticed without calling rebuild
+     */
+    public boolean isTracking() {
+        return tracking;
+    }
+
+    /**
+     * Marks the index stale so that the next query rebuilds it.
+     */
+    public void rebuild() {
+        state = null;
+    }
+
+    private State state() {
+        State s = state;
+        if (s != null)
+            return s;
+        synchronized (this) {
+            s = state;
+            if (s == null) {
+                s = new State();
+                Element root = document.getDocumentElement();
+                if (root != null)
+                    add(s, root, 0, 0);
+                state = s;
+            }
+            return s;
+        }
+    }
+
+    private static int add(State s, Element element, int order, int sibling) {
+        Position position = new Position(order, sibling);
+        s.positions.put(element, position);
+        s.byTag.computeIfAbsent(element.getNodeName(), k -> new ArrayList<>()).add(element);
+        NamedNodeMap attrs = element.getAttributes();
+        for (int i = 0; i < attrs.getLength(); i++) {
+            Attr attr = (Attr) attrs.item(i);
+            s.byAttr.computeIfAbsent(attr.getName(), k -> new HashMap<>())
+                    .computeIfAbsent(attr.getValue(), k -> new ArrayList<>(1))
+                    .add(element);
+        }
+        int last = order;
+        int children = 0;
+        for (Node n = element.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n instanceof Element) {
+                Element child = (Element) n;
+                if (position.children == null)
+                    position.children = new HashMap<>();
+                position.children.computeIfAbsent(child.getNodeName(), k -> new ArrayList<>()).add(child);
+                last = add(s, child, last + 1, children++);
+            }
+        }
+        position.last = last;
+        return last;
+    }
+
+    /**
+     * @param list elements in document order
+     * @return the index of the first element after order in document order
+     */
+    private static int firstAfter(State s, List<Element> list, int order) {
+        int low = 0;
+        int high = list.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (s.positions.get(list.get(mid)).order <= order)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * @param list children of one parent in document order
+     * @return the index of the first child after the sibling number
+     */
+    private static int firstSiblingAfter(State s, List<Element> list, int sibling) {
+        int low = 0;
+        int high = list.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (s.positions.get(list.get(mid)).sibling <= sibling)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    private static List<Element> children(Position position, String name) {
+        if (position.children == null)
+            return Collections.emptyList();
+        return position.children.getOrDefault(name, Collections.emptyList());
+    }
+
+    /**
+     * @param name
+     * @return all elements with the tag name in document order
+     */
+    public List<Element> getElementsByTagName(String name) {
+        return Collections.unmodifiableList(state().byTag.getOrDefault(name, Collections.emptyList()));
+    }
+
+    /**
+     * @param name
+     * @param value
+     * @return all elements whose attribute has the value, in document order
+     */
+    public List<Element> getElementsByAttr(String name, String value) {
+        Map<String, List<Element>> values = state().byAttr.get(name);
+        List<Element> list = values == null ? null : values.get(value);
+        return list == null ? Collections.emptyList() : Collections.unmodifiableList(list);
+    }
+
+    /**
+     * @param parent
+     * @param name
+     * @return the first child element with the name or null
+     */
+    public Element getChildByName(Element parent, String name) {
+        Position position = state().positions.get(parent);
+        if (position == null)
+            return XmlUtil.scanChildByName(parent, name);
+        List<Element> list = children(position, name);
+        return list.isEmpty() ? null : list.get(0);
+    }
+
+    /**
+     * @param parent
+     * @param name
+     * @return the child elements with the name in document order
+     */
+    public List<Element> getChildrenByName(Element parent, String name) {
+        Position position = state().positions.get(parent);
+        if (position == null) {
+            List<Element> list = new ArrayList<>();
+            for (Element child = XmlUtil.scanChildByName(parent, name); child != null; child = XmlUtil.scanNextSiblingByName(child, name))
+                list.add(child);
+            return list;
+        }
+        return Collections.unmodifiableList(children(position, name));
+    }
+
+    /**
+     * @param element
+     * @param name
+     * @return the next sibling element with the name or null
+     */
+    public Element getNextSiblingByName(Element element, String name) {
+        State s = state();
+        Position position = s.positions.get(element);
+        if (position == null)
+            return XmlUtil.scanNextSiblingByName(element, name);
+        Node parent = element.getParentNode();
+        if (!(parent instanceof Element))
+            return null;
+        List<Element> list = children(s.positions.get(parent), name);
+        int i = firstSiblingAfter(s, list, position.sibling);
+        return i < list.size() ? list.get(i) : null;
+    }
+
+    /**
+     * @param element
+     * @param name
+     * @return the previous sibling element with the name or null
+     */
+    public Element getPreviousSiblingByName(Element element, String name) {
+        State s = state();
+        Position position = s.positions.get(element);
+        if (position == null)
+            return XmlUtil.scanPreviousSiblingByName(element, name);
+        Node parent = element.getParentNode();
+        if (!(parent instanceof Element))
+            return null;
+        List<Element> list = children(s.positions.get(parent), name);
+        int i = firstSiblingAfter(s, list, position.sibling - 1) - 1;
+        return i >= 0 ? list.get(i) : null;
+    }
+
+    /**
+     * @param root
+     * @param name
+     * @return the descendants of root with the tag name in document order
+     */
+    public Element[] getElementList(Element root, String name) {
+        State s = state();
+        Position position = s.positions.get(root);
+        if (position == null)
+            return XmlUtil.scanElementList(root, name);
+        List<Element> list = s.byTag.getOrDefault(name, Collections.emptyList());
+        int from = firstAfter(s, list, position.order);
+        int to = firstAfter(s, list, position.last);
+        return list.subList(from, to).toArray(new Element[0]);
+    }
+
+    /**
+     * @param root
+     * @param name attribute name
+     * @param value
+     * @return the first descendant of root in document order whose attribute has the value or null
+     */
+    public Element getElementByAttr(Element root, String name, String value) {
+        State s = state();
+        Position position = s.positions.get(root);
+        // an empty value also matches elements without the attribute, which are not indexed
+        if (position == null || value.isEmpty())
+            return XmlUtil.scanElementByAttr(root, name, value);
+        List<Element> list = getElementsByAttr(name, value);
+        int i = firstAfter(s, list, position.order);
+        if (i < list.size() && s.positions.get(list.get(i)).order <= position.last)
+            return list.get(i);
+        return null;
+    }
+
+    /**
+     * @param parent
+     * @param tag
+     * @param name attribute name
+     * @param value
+     * @return the first child of parent with the tag whose attribute has the value or null
+     */
+    public Element getChildWithAttribute(Element parent, String tag, String name, String value) {
+        State s = state();
+        Position position = s.positions.get(parent);
+        if (position == null || value.isEmpty())
+            return XmlUtil.scanChildWithAttribute(parent, tag, name, value);
+        List<Element> list = getElementsByAttr(name, value);
+        for (int i = firstAfter(s, list, position.order); i < list.size(); i++) {
+            Element element = list.get(i);
+            if (s.positions.get(element).order > position.last)
+                break;
+            if (element.getParentNode() == parent && element.getNodeName().equals(tag))
+                return element;
+        }
+        return null;
+    }
+}
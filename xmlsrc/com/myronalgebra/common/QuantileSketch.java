@@ -0,0 +1,194 @@
+package com.myronalgebra.common;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.function.DoubleConsumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Estimates quantiles, e.g. the median or the 99th percentile, of non-negative samples in
+ * constant memory.
+ * <p>Samples are counted in buckets whose width grows with the value, as in HdrHistogram:
+ * values below 2^bits have a bucket each, and above that every power of two is split into
+ * 2^(bits-1) buckets. A quantile is reported as the middle of its bucket, so its relative
+ * error is at most 2^-bits, about 0.4% with the default of 8 bits, which needs 7296 counters
+ * whatever the number or range of the samples.</p>
+ * <p>Sketches with the same number of bits can be combined. A sketch is not thread safe; keep
+ * one per thread or per stream segment and combine them, e.g. with merge or
+ * Statistics.sketch. Record samples in the smallest unit of interest, such as microseconds:
+ * double samples are rounded to long.</p>
+ */
+public final class QuantileSketch implements LongConsumer, DoubleConsumer {
+    public static final int DEFAULT_BITS = 8;
+
+    private final int bits;
+    private final int half;
+    private final long[] counts;
+    private long count;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+    private int lowest = Integer.MAX_VALUE;
+    private int highest = -1;
+
+    public QuantileSketch() {
+        this(DEFAULT_BITS);
+    }
+
+    /**
+     * @param bits significant bits kept per sample, 2 to 16; the relative error is at most 2^-bits
+     */
+    public QuantileSketch(int bits) {
+        if (bits < 2 || bits > 16)
+            throw new IllegalArgumentException("bits must be between 2 and 16");
+        this.bits = bits;
+        this.half = 1 << (bits - 1);
+        this.counts = new long[index(Long.MAX_VALUE) + 1];
+    }
+
+    /**
+     * @param shards sketches with the same number of bits
+     * @return a new sketch of all samples, combined in parallel
+     */
+    public static QuantileSketch merge(Collection<QuantileSketch> shards) {
+        Iterator<QuantileSketch> it = shards.iterator();
+        int bits = it.hasNext() ? it.next().bits : DEFAULT_BITS;
+        return shards.parallelStream().collect(() -> new QuantileSketch(bits), QuantileSketch::combine, QuantileSketch::combine);
+    }
+
+    private int index(long value) {
+        if (value < 2L * half)
+            return (int) value;
+        int shift = 64 - Long.numberOfLeadingZeros(value) - bits;
+        return shift * half + (int) (value >>> shift);
+    }
+
+    private long lowestValue(int index) {
+        if (index < 2 * half)
+            return index;
+        int shift = index / half - 1;
+        return (long) (index - shift * half) << shift;
+    }
+
+    private long width(int index) {
+        return index < 2 * half ? 1 : 1L << (index / half - 1);
+    }
+
+    /**
+     * @param value a sample
+     * @throws IllegalArgumentException if the value is negative
+     */
+    @Override
+    public void accept(long value) {
+        if (value < 0)
+            throw new IllegalArgumentException("negative sample " + value);
+        int index = index(value);
+        counts[index]++;
+        count++;
+        if (value < min)
+            min = value;
+        if (value > max)
+            max = value;
+        if (index < lowest)
+            lowest = index;
+        if (index > highest)
+            highest = index;
+    }
+
+    /**
+     * @param value a sample, rounded to the nearest long; NaN is rejected like a negative sample
+     */
+    @Override
+    public void accept(double value) {
+        if (Double.isNaN(value))
+            throw new IllegalArgumentException("NaN sample");
+        accept(Math.round(value));
+    }
+
+    /**
+     * Adds the samples of another sketch.
+     * @param other a sketch with the same number of bits
+     * @return this
+     */
+    public QuantileSketch combine(QuantileSketch other) {
+        if (other.bits != bits)
+            throw new IllegalArgumentException("cannot combine sketches of " + bits + " and " + other.bits + " bits");
+        for (int i = other.lowest; i <= other.highest; i++)
+            counts[i] += other.counts[i];
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        lowest = Math.min(lowest, other.lowest);
+        highest = Math.max(highest, other.highest);
+        return this;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the smallest sample, exactly; 0 if there are none
+     */
+    public long getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    /**
+     * @return the largest sample, exactly; 0 if there are none
+     */
+    public long getMax() {
+        return count == 0 ? 0 : max;
+    }
+
+    /**
+     * @param quantile between 0 and 1, e.g. 0.99 for the 99th percentile
+     * @return the estimated sample at the quantile; 0 if there are no samples
+     */
+    public double getQuantile(double quantile) {
+        if (quantile < 0 || quantile > 1)
+            throw new IllegalArgumentException("quantile must be between 0 and 1");
+        if (count == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = lowest; i <= highest; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                double middle = lowestValue(i) + (width(i) - 1) / 2.0;
+                return Math.max(min, Math.min(max, middle));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @param quantiles values between 0 and 1
+     * @return the estimated sample at each quantile
+     */
+    public double[] getQuantiles(double... quantiles) {
+        double[] result = new double[quantiles.length];
+        for (int i = 0; i < quantiles.length; i++)
+            result[i] = getQuantile(quantiles[i]);
+        return result;
+    }
+
+    /**
+     * Removes all samples.
+     */
+    public void reset() {
+        if (highest >= 0)
+            Arrays.fill(counts, lowest, highest + 1, 0);
+        count = 0;
+        min = Long.MAX_VALUE;
+        max = Long.MIN_VALUE;
+        lowest = Integer.MAX_VALUE;
+        highest = -1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d, min=%d, p50=%.1f, p99=%.1f, p999=%.1f, max=%d",
+                count, getMin(), getQuantile(0.5), getQuantile(0.99), getQuantile(0.999), getMax());
+    }
+}
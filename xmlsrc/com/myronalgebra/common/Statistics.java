@@ -1,27 +1,289 @@
 package com.myronalgebra.common;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.function.BiFunction;
+import java.util.function.DoubleConsumer;
+import java.util.function.LongConsumer;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collector;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 
 public class Statistics {
+    /** arrays at least this long are reduced in parallel */
+    static final int PARALLEL_THRESHOLD = 1 << 14;
+
+    /**
+     * Count, sum, mean, variance, minimum and maximum of a stream of samples, computed in
+     * one pass without keeping the samples.
+     * <p>The mean and variance are updated with Welford's method, which stays accurate where
+     * the sum of squares would cancel, and the sum is Kahan compensated. Two accumulators
+     * of disjoint samples can be combined, so one may be kept per thread or per stream
+     * segment and merged at the end:</p>
+     * <pre>
+     * Accumulator a = latencies.parallelStream().mapToDouble(Double::doubleValue)
+     *         .collect(Accumulator::new, Accumulator::accept, Accumulator::combine);
+     * </pre>
+     * <p>An accumulator is not thread safe.</p>
+     */
+    public static final class Accumulator implements DoubleConsumer, LongConsumer {
+        private long count;
+        private double mean;
+        private double m2;
+        private double sum;
+        private double sumCompensation;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+
+        @Override
+        public void accept(double value) {
+            count++;
+            double delta = value - mean;
+            mean += delta / count;
+            m2 += delta * (value - mean);
+            addToSum(value);
+            if (value < min)
+                min = value;
+            if (value > max)
+                max = value;
+        }
+
+        @Override
+        public void accept(long value) {
+            accept((double) value);
+        }
+
+        /**
+         * Adds the samples of another accumulator, as if they had been accepted by this one.
+         * @param other
+         * @return this
+         */
+        public Accumulator combine(Accumulator other) {
+            if (other.count == 0)
+                return this;
+            if (count == 0) {
+                count = other.count;
+                mean = other.mean;
+                m2 = other.m2;
+                sum = other.sum;
+                sumCompensation = other.sumCompensation;
+                min = other.min;
+                max = other.max;
+                return this;
+            }
+            long n = count + other.count;
+            double delta = other.mean - mean;
+            mean += delta * other.count / n;
+            m2 += other.m2 + delta * delta * ((double) count * other.count / n);
+            count = n;
+            addToSum(other.sum);
+            addToSum(-other.sumCompensation);
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            return this;
+        }
+
+        private void addToSum(double value) {
+            double y = value - sumCompensation;
+            double t = sum + y;
+            sumCompensation = (t - sum) - y;
+            sum = t;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getSum() {
+            return sum - sumCompensation;
+        }
+
+        /**
+         * @return the mean or 0 if there are no samples
+         */
+        public double getMean() {
+            return count == 0 ? 0 : getSum() / count;
+        }
+
+        /**
+         * @return the sample variance, dividing by count - 1; 0 for fewer than two samples
+         */
+        public double getVariance() {
+            return count < 2 ? 0 : m2 / (count - 1);
+        }
+
+        /**
+         * @return the population variance, dividing by count; 0 if there are no samples
+         */
+        public double getPopulationVariance() {
+            return count == 0 ? 0 : m2 / count;
+        }
+
+        /**
+         * @return the sample standard deviation; 0 for fewer than two samples
+         */
+        public double getStdev() {
+            return Math.sqrt(getVariance());
+        }
+
+        /**
+         * @return the smallest sample or positive infinity if there are none
+         */
+        public double getMin() {
+            return min;
+        }
+
+        /**
+         * @return the largest sample or negative infinity if there are none
+         */
+        public double getMax() {
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d, sum=%f, mean=%f, stdev=%f, min=%f, max=%f",
+                    count, getSum(), getMean(), getStdev(), min, max);
+        }
+    }
+
+    /**
+     * @return a collector of numbers, e.g. for a parallel stream of boxed samples
+     */
+    public static Collector<Number, Accumulator, Accumulator> accumulating() {
+        return accumulating(Number::doubleValue);
+    }
+
+    /**
+     * @param sample extracts the sample of an element
+     * @return a collector of the samples of the elements
+     */
+    public static <T> Collector<T, Accumulator, Accumulator> accumulating(ToDoubleFunction<? super T> sample) {
+        return Collector.of(Accumulator::new, (a, t) -> a.accept(sample.applyAsDouble(t)), Accumulator::combine,
+                Collector.Characteristics.IDENTITY_FINISH, Collector.Characteristics.UNORDERED);
+    }
+
+    /**
+     * @param stats
+     * @return an accumulator of the values
+     */
+    public static Accumulator accumulate(Collection<? extends Number> stats) {
+        Accumulator accumulator = new Accumulator();
+        for (Number value : stats)
+            accumulator.accept(value.doubleValue());
+        return accumulator;
+    }
+
+    /**
+     * @param values
+     * @return an accumulator of the values, reduced in parallel for large arrays
+     */
+    public static Accumulator accumulate(double[] values) {
+        DoubleStream stream = Arrays.stream(values);
+        return accumulate(values.length >= PARALLEL_THRESHOLD ? stream.parallel() : stream);
+    }
+
+    /**
+     * @param values
+     * @return an accumulator of the values, reduced in parallel for large arrays
+     */
+    public static Accumulator accumulate(long[] values) {
+        LongStream stream = Arrays.stream(values);
+        return (values.length >= PARALLEL_THRESHOLD ? stream.parallel() : stream)
+                .collect(Accumulator::new, Accumulator::accept, Accumulator::combine);
+    }
+
+    /**
+     * @param values a sequential or parallel stream
+     * @return an accumulator of the values
+     */
+    public static Accumulator accumulate(DoubleStream values) {
+        return values.collect(Accumulator::new, Accumulator::accept, Accumulator::combine);
+    }
+
+    /**
+     * @param values non-negative samples
+     * @return a sketch of the values, built in parallel for large arrays
+     */
+    public static QuantileSketch sketch(long[] values) {
+        LongStream stream = Arrays.stream(values);
+        return sketch(values.length >= PARALLEL_THRESHOLD ? stream.parallel() : stream);
+    }
+
+    /**
+     * @param values non-negative samples, rounded to long
+     * @return a sketch of the values, built in parallel for large arrays
+     */
+    public static QuantileSketch sketch(double[] values) {
+        DoubleStream stream = Arrays.stream(values);
+        return sketch(values.length >= PARALLEL_THRESHOLD ? stream.parallel() : stream);
+    }
+
+    /**
+     * @param values a sequential or parallel stream of non-negative samples
+     * @return a sketch of the values; a parallel stream fills one sketch per segment and combines them
+     */
+    public static QuantileSketch sketch(LongStream values) {
+        return values.collect(QuantileSketch::new, QuantileSketch::accept, QuantileSketch::combine);
+    }
+
+    /**
+     * @param values a sequential or parallel stream of non-negative samples, rounded to long
+     * @return a sketch of the values
+     */
+    public static QuantileSketch sketch(DoubleStream values) {
+        return values.collect(QuantileSketch::new, QuantileSketch::accept, QuantileSketch::combine);
+    }
+
+    /**
+     * @param values non-negative samples
+     * @param quantiles values between 0 and 1, e.g. 0.5, 0.99, 0.999
+     * @return the estimated sample at each quantile
+     */
+    public static double[] percentiles(long[] values, double... quantiles) {
+        return sketch(values).getQuantiles(quantiles);
+    }
+
+    public static double avg(double[] values) {
+        return accumulate(values).getMean();
+    }
+
+    public static double avg(long[] values) {
+        return accumulate(values).getMean();
+    }
+
+    public static double stdev(double[] values) {
+        return accumulate(values).getStdev();
+    }
+
+    public static double stdev(long[] values) {
+        return accumulate(values).getStdev();
+    }
+
+    public static double sum(double[] values) {
+        return accumulate(values).getSum();
+    }
+
+    public static long sum(long[] values) {
+        LongStream stream = Arrays.stream(values);
+        return (values.length >= PARALLEL_THRESHOLD ? stream.parallel() : stream).sum();
+    }
+
     public static double stdev(Collection<Double> stats) {
-        if (stats.size() == 1)
-            return 0;
-        double avg = avg(stats);
-        double sumsq = stats.stream().mapToDouble(t->(t - avg) * (t-avg)).sum();
-        double stdev = Math.sqrt(sumsq/(stats.size() - 1));
-        return stdev;
+        return accumulate(stats).getStdev();
     }
 
     public static double stdevInt(Collection<Integer> stats) {
-        if (stats.size() == 1)
-            return 0;
-        double avg = avgInt(stats);
-        double sumsq = stats.stream().mapToDouble(t->(t - avg) * (t-avg)).sum();
-        double stdev = Math.sqrt(sumsq/(stats.size() - 1));
-        return stdev;
+        return accumulate(stats).getStdev();
     }
 
     public static double avg(Collection<Double> stats) {
@@ -44,36 +306,344 @@ public class Statistics {
         return stats.stream().mapToInt(t -> t).summaryStatistics().getSum();
     }
 
+    /**
+     * @param detected
+     * @return the key of the smallest value or null if the map is empty
+     */
+    public static <K, V extends Comparable<V>> K keyOfMin(Map<K, V> detected) {
+        return argMin(detected, Comparator.naturalOrder());
+    }
+
+    /**
+     * Kept for binary compatibility; see keyOfMin(Map).
+     */
     public static <K, V extends Comparable<V>> K keyOfMin(Hashtable<K, V> detected) {
+        return keyOfMin((Map<K, V>) detected);
+    }
+
+    /**
+     * @param detected
+     * @param comparison true if the first value should be chosen over the second
+     * @return the key of the value chosen over all others or null if the map is empty
+     */
+    public static <K, V extends Comparable<V>> K keyOf(Map<K, V> detected, BiFunction<V, V, Boolean> comparison ) {
         K minKey = null;
         V minValue = null;
-        for (K k: detected.keySet()) {
-            if (minValue == null) {
-                minValue = detected.get(k);
-                minKey = k;
-            } else if (detected.get(k).compareTo(minValue) < 0) {
-                minValue = detected.get(k);
-                minKey = k;
+        boolean first = true;
+        for (Map.Entry<K, V> entry : detected.entrySet()) {
+            V value = entry.getValue();
+            if (first || comparison.apply(value, minValue)) {
+                minValue = value;
+                minKey = entry.getKey();
+                first = false;
             }
         }
         return minKey;
     }
 
+    /**
+     * Kept for binary compatibility; see keyOf(Map, BiFunction).
+     */
     public static <K, V extends Comparable<V>> K keyOf(Hashtable<K, V> detected, BiFunction<V, V, Boolean> comparison ) {
+        return keyOf((Map<K, V>) detected, comparison);
+    }
+
+    /**
+     * Keeps the key with the best score seen, without boxing the scores.
+     */
+    private static final class Best<K> {
+        private final boolean max;
+        private K key;
+        private double score = Double.NaN;
+
+        Best(boolean max) {
+            this.max = max;
+        }
+
+        void accept(K key, double score) {
+            if (better(score, this.score, max)) {
+                this.key = key;
+                this.score = score;
+            }
+        }
+
+        void combine(Best<K> other) {
+            accept(other.key, other.score);
+        }
+    }
+
+    /**
+     * Keeps the k largest entries of a map in a heap whose head is the smallest of them.
+     */
+    private static final class Top<K, V> {
+        private final int k;
+        private final Comparator<Map.Entry<K, V>> order;
+        private final PriorityQueue<Map.Entry<K, V>> heap;
+
+        Top(int k, Comparator<? super V> order) {
+            this.k = k;
+            this.order = Map.Entry.comparingByValue(order);
+            this.heap = new PriorityQueue<>(k + 1, this.order);
+        }
+
+        void accept(Map.Entry<K, V> entry) {
+            if (heap.size() < k) {
+                heap.add(entry);
+            } else if (order.compare(entry, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(entry);
+            }
+        }
+
+        void combine(Top<K, V> other) {
+            for (Map.Entry<K, V> entry : other.heap)
+                accept(entry);
+        }
+
+        List<K> keys() {
+            List<Map.Entry<K, V>> entries = new ArrayList<>(heap);
+            entries.sort(order.reversed());
+            List<K> keys = new ArrayList<>(entries.size());
+            for (Map.Entry<K, V> entry : entries)
+                keys.add(entry.getKey());
+            return keys;
+        }
+    }
+
+    /**
+     * @param map
+     * @param order
+     * @return the key of the smallest value or null if the map is empty
+     */
+    public static <K, V> K argMin(Map<K, V> map, Comparator<? super V> order) {
         K minKey = null;
         V minValue = null;
-        for (K k: detected.keySet()) {
-            if (minValue == null) {
-                minValue = detected.get(k);
-                minKey = k;
-            } else if (comparison.apply(detected.get(k), minValue)) {
-                minValue = detected.get(k);
-                minKey = k;
+        boolean first = true;
+        for (Map.Entry<K, V> entry : map.entrySet()) {
+            V value = entry.getValue();
+            if (first || order.compare(value, minValue) < 0) {
+                minValue = value;
+                minKey = entry.getKey();
+                first = false;
             }
         }
         return minKey;
     }
 
+    /**
+     * @param map
+     * @param order
+     * @return the key of the largest value or null if the map is empty
+     */
+    public static <K, V> K argMax(Map<K, V> map, Comparator<? super V> order) {
+        return argMin(map, order.reversed());
+    }
+
+    /**
+     * @param map
+     * @param order
+     * @param parallel scan the entries with the common fork-join pool; for large maps that
+     *                 are not modified meanwhile
+     * @return the key of the smallest value or null if the map is empty
+     */
+    public static <K, V> K argMin(Map<K, V> map, Comparator<? super V> order, boolean parallel) {
+        if (!parallel)
+            return argMin(map, order);
+        return map.entrySet().parallelStream()
+                .min(Map.Entry.comparingByValue(order))
+                .map(Map.Entry::getKey)
+                .orElse(null);
+    }
+
+    /**
+     * @param map
+     * @param order
+     * @param parallel scan the entries with the common fork-join pool; for large maps that
+     *                 are not modified meanwhile
+     * @return the key of the largest value or null if the map is empty
+     */
+    public static <K, V> K argMax(Map<K, V> map, Comparator<? super V> order, boolean parallel) {
+        return argMin(map, order.reversed(), parallel);
+    }
+
+    /**
+     * Ranks the values by a primitive score, computed once per entry.
+     * @param map
+     * @param score NaN scores are ignored
+     * @param parallel scan the entries with the common fork-join pool
+     * @return the key with the smallest score or null if there is none
+     */
+    public static <K, V> K argMinBy(Map<K, V> map, ToDoubleFunction<? super V> score, boolean parallel) {
+        return best(map, score, false, parallel);
+    }
+
+    /**
+     * Ranks the values by a primitive score, computed once per entry.
+     * @param map
+     * @param score NaN scores are ignored
+     * @param parallel scan the entries with the common fork-join pool
+     * @return the key with the largest score or null if there is none
+     */
+    public static <K, V> K argMaxBy(Map<K, V> map, ToDoubleFunction<? super V> score, boolean parallel) {
+        return best(map, score, true, parallel);
+    }
+
+    private static <K, V> K best(Map<K, V> map, ToDoubleFunction<? super V> score, boolean max, boolean parallel) {
+        if (parallel) {
+            return map.entrySet().parallelStream().collect(
+                    () -> new Best<K>(max),
+                    (best, entry) -> best.accept(entry.getKey(), score.applyAsDouble(entry.getValue())),
+                    Best::combine).key;
+        }
+        Best<K> best = new Best<>(max);
+        for (Map.Entry<K, V> entry : map.entrySet())
+            best.accept(entry.getKey(), score.applyAsDouble(entry.getValue()));
+        return best.key;
+    }
+
+    /**
+     * @param map
+     * @param k
+     * @param order
+     * @param parallel keep a heap per fork-join segment and combine them
+     * @return the keys of the k largest values, largest first
+     */
+    public static <K, V> List<K> topK(Map<K, V> map, int k, Comparator<? super V> order, boolean parallel) {
+        if (k < 0)
+            throw new IllegalArgumentException("k must not be negative");
+        int size = Math.min(k, map.size());
+        if (size == 0)
+            return Collections.emptyList();
+        if (parallel)
+            return map.entrySet().parallelStream().collect(() -> new Top<K, V>(size, order), Top::accept, Top::combine).keys();
+        Top<K, V> top = new Top<>(size, order);
+        for (Map.Entry<K, V> entry : map.entrySet())
+            top.accept(entry);
+        return top.keys();
+    }
+
+    /**
+     * @param map
+     * @param k
+     * @param order
+     * @param parallel keep a heap per fork-join segment and combine them
+     * @return the keys of the k smallest values, smallest first
+     */
+    public static <K, V> List<K> bottomK(Map<K, V> map, int k, Comparator<? super V> order, boolean parallel) {
+        return topK(map, k, order.reversed(), parallel);
+    }
+
+    private static boolean better(double score, double than, boolean max) {
+        return !Double.isNaN(score) && (Double.isNaN(than) || (max ? score > than : score < than));
+    }
+
+    private static int best(double[] scores, boolean max) {
+        if (scores.length >= PARALLEL_THRESHOLD) {
+            return IntStream.range(0, scores.length).parallel()
+                    .reduce((a, b) -> better(scores[b], scores[a], max) ? b : a)
+                    .orElse(-1);
+        }
+        int best = -1;
+        double bestScore = Double.NaN;
+        for (int i = 0; i < scores.length; i++) {
+            if (better(scores[i], bestScore, max)) {
+                best = i;
+                bestScore = scores[i];
+            }
+        }
+        return best < 0 && scores.length > 0 ? 0 : best;
+    }
+
+    /**
+     * Works on scores indexed by candidate number, the primitive form of a map; large
+     * arrays are scanned in parallel.
+     * @param scores NaN scores are ignored
+     * @return the index of the first smallest score or -1 if the array is empty
+     */
+    public static int argMin(double[] scores) {
+        return best(scores, false);
+    }
+
+    /**
+     * @param scores NaN scores are ignored
+     * @return the index of the first largest score or -1 if the array is empty
+     */
+    public static int argMax(double[] scores) {
+        return best(scores, true);
+    }
+
+    /**
+     * Selects with a heap of k indexes, so nothing is boxed and the scores are not copied.
+     * @param scores NaN scores rank lowest
+     * @param k
+     * @return the indexes of the k largest scores, largest first
+     */
+    public static int[] topK(double[] scores, int k) {
+        if (k < 0)
+            throw new IllegalArgumentException("k must not be negative");
+        k = Math.min(k, scores.length);
+        int[] heap = new int[k];
+        int size = 0;
+        for (int i = 0; i < scores.length; i++) {
+            if (size < k) {
+                heap[size] = i;
+                siftUp(heap, size++, scores);
+            } else if (k > 0 && ranksAbove(i, heap[0], scores)) {
+                heap[0] = i;
+                siftDown(heap, size, scores);
+            }
+        }
+        int[] result = new int[size];
+        while (size > 0) {
+            result[size - 1] = heap[0];
+            heap[0] = heap[--size];
+            siftDown(heap, size, scores);
+        }
+        return result;
+    }
+
+    /**
+     * Orders by score, NaN lowest, then by index, so earlier indexes win ties.
+     */
+    private static boolean ranksAbove(int a, int b, double[] scores) {
+        double sa = scores[a];
+        double sb = scores[b];
+        if (Double.isNaN(sa) || Double.isNaN(sb))
+            return Double.isNaN(sb) && (!Double.isNaN(sa) || a < b);
+        return sa > sb || (sa == sb && a < b);
+    }
+
+    // a min-heap: the lowest ranking index is at the root
+    private static void siftUp(int[] heap, int pos, double[] scores) {
+        int item = heap[pos];
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (!ranksAbove(heap[parent], item, scores))
+                break;
+            heap[pos] = heap[parent];
+            pos = parent;
+        }
+        heap[pos] = item;
+    }
+
+    private static void siftDown(int[] heap, int size, double[] scores) {
+        if (size == 0)
+            return;
+        int item = heap[0];
+        int pos = 0;
+        int half = size >>> 1;
+        while (pos < half) {
+            int child = 2 * pos + 1;
+            if (child + 1 < size && ranksAbove(heap[child], heap[child + 1], scores))
+                child++;
+            if (!ranksAbove(item, heap[child], scores))
+                break;
+            heap[pos] = heap[child];
+            pos = child;
+        }
+        heap[pos] = item;
+    }
+
 
     public static void main(String[] args) {
         Double[] data = new Double[]
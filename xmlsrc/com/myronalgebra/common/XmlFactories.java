@@ -0,0 +1,150 @@
+package com.myronalgebra.common;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches configured DocumentBuilders and Transformers per thread.
+ * <p>Looking up a factory goes through the service loader and is expensive, so XmlUtil
+ * obtains its builders and transformers here instead. Each thread keeps one of each;
+ * they are reset before being handed out. Changing a setting discards the cached
+ * instances of every thread the next time that thread asks for one.</p>
+ */
+public class XmlFactories {
+    private static final Object lock = new Object();
+    private static volatile int generation;
+    private static boolean namespaceAware;
+    private static final Map<String, Boolean> features = new LinkedHashMap<>();
+
+    private static class Cache {
+        int generation = -1;
+        DocumentBuilder builder;
+        DocumentBuilder expandedBuilder;
+        Transformer transformer;
+    }
+
+    private static final ThreadLocal<Cache> caches = ThreadLocal.withInitial(Cache::new);
+
+    private XmlFactories() {
+    }
+
+    /**
+     * @param aware true if parsed documents should support XML namespaces; false by default
+     */
+    public static void setNamespaceAware(boolean aware) {
+        synchronized (lock) {
+            namespaceAware = aware;
+            generation++;
+        }
+    }
+
+    /**
+     * Sets a feature of the DocumentBuilderFactory. The secure processing feature is also
+     * applied to the TransformerFactory.
+     * @param name feature URI
+     * @param value
+     */
+    public static void setFeature(String name, boolean value) {
+        synchronized (lock) {
+            features.put(name, value);
+            generation++;
+        }
+    }
+
+    /**
+     * @param secure value of XMLConstants.FEATURE_SECURE_PROCESSING
+     */
+    public static void setSecureProcessing(boolean secure) {
+        setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, secure);
+    }
+
+    /**
+     * Creates a factory with the current settings.
+     * @return factory
+     * @throws ParserConfigurationException if a feature is not supported
+     */
+    public static DocumentBuilderFactory newDocumentBuilderFactory() throws ParserConfigurationException {
+        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
+        synchronized (lock) {
+            dbFactory.setNamespaceAware(namespaceAware);
+            for (Map.Entry<String, Boolean> feature : features.entrySet())
+                dbFactory.setFeature(feature.getKey(), feature.getValue());
+        }
+        return dbFactory;
+    }
+
+    /**
+     * @return the calling thread's DocumentBuilder, reset
+     * @throws ParserConfigurationException if a feature is not supported
+     */
+    public static DocumentBuilder documentBuilder() throws ParserConfigurationException {
+        Cache cache = current();
+        if (cache.builder == null)
+            cache.builder = newDocumentBuilderFactory().newDocumentBuilder();
+        else
+            cache.builder.reset();
+        return cache.builder;
+    }
+
+    /**
+     * Returns a builder whose documents are fully expanded while parsing.
+     * By default Xerces expands nodes lazily on first access, which modifies the document
+     * and makes concurrent reads of it unsafe.
+     * @return the calling thread's expanding DocumentBuilder, reset
+     * @throws ParserConfigurationException if a feature is not supported
+     */
+    public static DocumentBuilder expandedDocumentBuilder() throws ParserConfigurationException {
+        Cache cache = current();
+        if (cache.expandedBuilder == null) {
+            DocumentBuilderFactory dbFactory = newDocumentBuilderFactory();
+            try {
+                dbFactory.setFeature("http://apache.org/xml/features/dom/defer-node-expansion", false);
+            } catch (ParserConfigurationException e) {
+                // not Xerces; other parsers build the whole tree up front
+            }
+            cache.expandedBuilder = dbFactory.newDocumentBuilder();
+        } else {
+            cache.expandedBuilder.reset();
+        }
+        return cache.expandedBuilder;
+    }
+
+    /**
+     * @return the calling thread's Transformer, reset to identity with default output properties
+     * @throws TransformerConfigurationException
+     */
+    public static Transformer transformer() throws TransformerConfigurationException {
+        Cache cache = current();
+        if (cache.transformer == null) {
+            TransformerFactory transformerFactory = TransformerFactory.newInstance();
+            synchronized (lock) {
+                Boolean secure = features.get(XMLConstants.FEATURE_SECURE_PROCESSING);
+                if (secure != null)
+                    transformerFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, secure);
+            }
+            cache.transformer = transformerFactory.newTransformer();
+        } else {
+            cache.transformer.reset();
+        }
+        return cache.transformer;
+    }
+
+    private static Cache current() {
+        Cache cache = caches.get();
+        int g = generation;
+        if (cache.generation != g) {
+            cache.builder = null;
+            cache.expandedBuilder = null;
+            cache.transformer = null;
+            cache.generation = g;
+        }
+        return cache;
+    }
+}
@@ -4,24 +4,45 @@ import org.w3c.dom.*;
 import org.xml.sax.InputSource;
 
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import java.io.*;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 public class XmlUtil {
+    private static final String ID_ATTRIBUTES = XmlUtil.class.getName() + ".ids";
+    /**
+     * Reason for the most recent read failure on any thread. Prefer getError() when reading concurrently.
+     */
     public static String error;
+    private static final ThreadLocal<String> threadError = new ThreadLocal<>();
+
+    /**
+     * @return reason for the most recent read failure on the calling thread, or null if it succeeded
+     */
+    public static String getError() {
+        return threadError.get();
+    }
+
+    private static void setError(String reason) {
+        error = reason;
+        threadError.set(reason);
+    }
 
     public static Document createDocument() {
         try {
-            DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
+            DocumentBuilder dBuilder = XmlFactories.documentBuilder();
             return dBuilder.newDocument();
         } catch (ParserConfigurationException e) {
         }
@@ -34,21 +55,36 @@ public class XmlUtil {
      * @return Document; if null, XmlUtil.error contains reason
      */
     public static Document readDocument(File file) {
+        try {
+            return readDocument(file, XmlFactories.documentBuilder());
+        } catch (ParserConfigurationException e) {
+            setError(e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Reads a File into a Document using the given builder.
+     * @param file
+     * @param dBuilder
+     * @return Document; if null, XmlUtil.error contains reason
+     */
+    public static Document readDocument(File file, DocumentBuilder dBuilder) {
         InputStream stream = null;
         try {
-            error = null;
+            setError(null);
             stream = new FileInputStream(file);
-            Document doc = readDocument(stream);
+            Document doc = readDocument(stream, dBuilder);
             return doc;
         } catch (Exception e) {
-            error = e.getMessage();
+            setError(e.getMessage());
             return null;
         } finally {
             try {
                 if (stream != null)
                     stream.close();
             } catch (IOException e) {
-                error = e.getMessage();
+                setError(e.getMessage());
                 return null;
             }
         }
@@ -60,15 +96,31 @@ public class XmlUtil {
      * @return Document; if null, XmlUtil.error contains reason
      */
     public static Document readDocument(InputStream stream) {
-        DocumentBuilder dBuilder;
         try {
-            error = null;
-            DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-            dBuilder = dbFactory.newDocumentBuilder();
+            return readDocument(stream, XmlFactories.documentBuilder());
+        } catch (ParserConfigurationException e) {
+            setError(e.getMessage());
+            try {
+                stream.close();
+            } catch (IOException ex) {
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Reads an XML document from a stream using the given builder. Unconditionally closes stream.
+     * @param stream
+     * @param dBuilder
+     * @return Document; if null, XmlUtil.error contains reason
+     */
+    public static Document readDocument(InputStream stream, DocumentBuilder dBuilder) {
+        try {
+            setError(null);
             Document doc = dBuilder.parse(stream);
             return doc;
         } catch (Exception e) {
-            error = e.getMessage();
+            setError(e.getMessage());
             return null;
         } finally {
             try {
@@ -84,21 +136,37 @@ public class XmlUtil {
      * @return Document; if null, XmlUtil.error contains reason
      */
     public static Document readDocument(Reader reader) {
-        DocumentBuilder dBuilder;
         try {
-            error = null;
-            DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-            dBuilder = dbFactory.newDocumentBuilder();
+            return readDocument(reader, XmlFactories.documentBuilder());
+        } catch (ParserConfigurationException e) {
+            setError(e.getMessage());
+            try {
+                reader.close();
+            } catch (IOException ex) {
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Reads a document from a Reader using the given builder. Unconditionally closes reader.
+     * @param reader
+     * @param dBuilder
+     * @return Document; if null, XmlUtil.error contains reason
+     */
+    public static Document readDocument(Reader reader, DocumentBuilder dBuilder) {
+        try {
+            setError(null);
             Document doc = dBuilder.parse(new InputSource(reader));
             return doc;
         } catch (Exception e) {
-            error = e.getMessage();
+            setError(e.getMessage());
             return null;
         } finally {
             try {
                 reader.close();
             } catch (IOException e) {
-                error = e.getMessage();
+                setError(e.getMessage());
             }
         }
     }
@@ -111,9 +179,7 @@ public class XmlUtil {
      * @throws Exception
      */
     public static void writeDocument(Document doc, File file, boolean indent) throws Exception {
-        TransformerFactory transformerFactory = TransformerFactory
-                .newInstance();
-        Transformer transformer = transformerFactory.newTransformer();
+        Transformer transformer = XmlFactories.transformer();
         transformer.setOutputProperty(OutputKeys.METHOD, "xml");
         if (indent)
             transformer.setOutputProperty(OutputKeys.INDENT, "yes");
@@ -123,9 +189,7 @@ public class XmlUtil {
     }
 
     public static void writeDocument(Document doc, OutputStream stream, boolean indent) throws Exception {
-        TransformerFactory transformerFactory = TransformerFactory
-                .newInstance();
-        Transformer transformer = transformerFactory.newTransformer();
+        Transformer transformer = XmlFactories.transformer();
         transformer.setOutputProperty(OutputKeys.METHOD, "xml");
         if (indent) {
             transformer.setOutputProperty(OutputKeys.INDENT, "yes");
@@ -137,9 +201,7 @@ public class XmlUtil {
     }
 
     public static void writeDocument(Document doc, StringWriter stream, int indent) throws Exception {
-        TransformerFactory transformerFactory = TransformerFactory
-                .newInstance();
-        Transformer transformer = transformerFactory.newTransformer();
+        Transformer transformer = XmlFactories.transformer();
         transformer.setOutputProperty(OutputKeys.METHOD, "xml");
         if (indent > 0) {
             transformer.setOutputProperty(OutputKeys.INDENT, "yes");
@@ -151,9 +213,7 @@ public class XmlUtil {
     }
 
     public static void writeDocument(Node node, StringWriter stream, int indent) throws Exception {
-        TransformerFactory transformerFactory = TransformerFactory
-                .newInstance();
-        Transformer transformer = transformerFactory.newTransformer();
+        Transformer transformer = XmlFactories.transformer();
         transformer.setOutputProperty(OutputKeys.METHOD, "xml");
         if (indent > 0) {
             transformer.setOutputProperty(OutputKeys.INDENT, "yes");
@@ -178,12 +238,19 @@ public class XmlUtil {
     }
 
     /**
-     * Return the first Element with the given name;
+     * Return the first Element with the given name; uses the DomIndex of the document if it has one.
      * @param parent
      * @param name
      * @return
      */
     public static Element getChildByName(Element parent, String name) {
+        DomIndex index = DomIndex.find(parent);
+        if (index != null)
+            return index.getChildByName(parent, name);
+        return scanChildByName(parent, name);
+    }
+
+    static Element scanChildByName(Element parent, String name) {
         Node node = parent.getFirstChild();
         while (node != null) {
             if (node instanceof Element)
@@ -194,18 +261,123 @@ public class XmlUtil {
         return null;
     }
 
+    /**
+     * Finds an element of the document by attribute value. If the attribute was registered
+     * with registerIds, this is a lookup of Document.getElementById; otherwise the document
+     * is searched as by getElementByAttr(Element, ...).
+     * @param navdoc
+     * @param name attribute name
+     * @param value
+     * @return an Element or null
+     */
     public static Element getElementByAttr(Document navdoc, String name, String value) {
-        return getElementByAttr(navdoc.getDocumentElement(), "id", value);
+        if (isIdAttribute(navdoc, name)) {
+            Element element = navdoc.getElementById(value);
+            if (element != null && value.equals(element.getAttribute(name)))
+                return element;
+            if (element == null)
+                return null;
+            // the value belongs to another ID attribute
+        }
+        return getElementByAttr(navdoc.getDocumentElement(), name, value);
+    }
+
+    /**
+     * Makes an attribute a DOM ID attribute of every element in the document that has it, so
+     * that getElementByAttr(Document, name, value) and Document.getElementById find elements
+     * without searching. Call it after loading the document and again after adding elements;
+     * changed values of registered attributes are tracked by the DOM. Where a value occurs
+     * more than once the first element in document order is found.
+     * @param doc
+     * @param name attribute name, e.g. "id"
+     */
+    public static void registerIds(Document doc, String name) {
+        Element root = doc.getDocumentElement();
+        if (root != null)
+            registerIds(doc, root, name);
+        synchronized (doc) {
+            @SuppressWarnings("unchecked")
+            Set<String> names = (Set<String>) doc.getUserData(ID_ATTRIBUTES);
+            Set<String> updated = names == null ? new HashSet<>() : new HashSet<>(names);
+            updated.add(name);
+            doc.setUserData(ID_ATTRIBUTES, updated, null);
+        }
+    }
+
+    private static void registerIds(Document doc, Element element, String name) {
+        Attr attr = element.getAttributeNode(name);
+        if (attr != null && !attr.isId() && doc.getElementById(attr.getValue()) == null)
+            element.setIdAttributeNode(attr, true);
+        for (Node n = element.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n instanceof Element)
+                registerIds(doc, (Element) n, name);
+        }
+    }
+
+    /**
+     * @param doc
+     * @param name attribute name
+     * @return true if the attribute was registered with registerIds
+     */
+    public static boolean isIdAttribute(Document doc, String name) {
+        Object names = doc.getUserData(ID_ATTRIBUTES);
+        return names != null && ((Set<?>) names).contains(name);
+    }
+
+    /**
+     * Searches the descendants of root for elements whose attribute matches. The tree is
+     * walked on the calling thread, since DOM nodes may not be read concurrently; with
+     * parallel the test is applied to the collected values on the fork-join pool, which
+     * pays off when the test is expensive, e.g. a regular expression, and there are many
+     * elements.
+     * @param root
+     * @param name attribute name; elements without it are skipped
+     * @param test
+     * @param parallel
+     * @return the matching elements in document order
+     */
+    public static List<Element> findElementsByAttr(Element root, String name, Predicate<String> test, boolean parallel) {
+        List<Map.Entry<Element, String>> candidates = new ArrayList<>();
+        collectAttributes(candidates, root, name);
+        return (parallel ? candidates.parallelStream() : candidates.stream())
+                .filter(entry -> test.test(entry.getValue()))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    private static void collectAttributes(List<Map.Entry<Element, String>> candidates, Element element, String name) {
+        for (Node n = element.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n instanceof Element) {
+                Attr attr = ((Element) n).getAttributeNode(name);
+                if (attr != null)
+                    candidates.add(new AbstractMap.SimpleImmutableEntry<>((Element) n, attr.getValue()));
+                collectAttributes(candidates, (Element) n, name);
+            }
+        }
     }
 
+    /**
+     * Returns the first descendant, in document order, whose attribute has the given value.
+     * @param element
+     * @param name attribute name
+     * @param value
+     * @return an Element or null
+     */
     public static Element getElementByAttr(Element element, String name, String value) {
+        DomIndex index = DomIndex.find(element);
+        if (index != null)
+            return index.getElementByAttr(element, name, value);
+        return scanElementByAttr(element, name, value);
+    }
+
+    static Element scanElementByAttr(Element element, String name, String value) {
         for (Node node = element.getFirstChild(); node != null; node = node.getNextSibling()) {
             if (node instanceof Element) {
                 Element elt = (Element) node;
                 String nodeId = elt.getAttribute(name);
                 if (nodeId.equals(value))
                     return elt;
-                Element result = getElementByAttr(elt, name, value);
+                Element result = scanElementByAttr(elt, name, value);
                 if (result != null)
                     return result;
             }
@@ -426,6 +598,13 @@ public class XmlUtil {
      * @return
      */
     public static Element getNextSiblingByName(Element elt, String name) {
+        DomIndex index = DomIndex.find(elt);
+        if (index != null)
+            return index.getNextSiblingByName(elt, name);
+        return scanNextSiblingByName(elt, name);
+    }
+
+    static Element scanNextSiblingByName(Element elt, String name) {
         elt = getNextSiblingElement(elt);
         while (elt != null && !elt.getNodeName().equals(name))
             elt = getNextSiblingElement(elt);
@@ -439,6 +618,13 @@ public class XmlUtil {
      * @return
      */
     public static Element getPreviousSiblingByName(Element elt, String name) {
+        DomIndex index = DomIndex.find(elt);
+        if (index != null)
+            return index.getPreviousSiblingByName(elt, name);
+        return scanPreviousSiblingByName(elt, name);
+    }
+
+    static Element scanPreviousSiblingByName(Element elt, String name) {
         elt = getPreviousSiblingElement(elt);
         while (elt != null && !elt.getNodeName().equals(name))
             elt = getPreviousSiblingElement(elt);
@@ -640,7 +826,20 @@ public class XmlUtil {
         return refList;
     }
 
+    /**
+     * Returns the descendants of body with the given name in document order.
+     * @param body
+     * @param elementName
+     * @return
+     */
     public static Element [] getElementList(Element body, String elementName) {
+        DomIndex index = DomIndex.find(body);
+        if (index != null)
+            return index.getElementList(body, elementName);
+        return scanElementList(body, elementName);
+    }
+
+    static Element [] scanElementList(Element body, String elementName) {
         ArrayList<Element> list = new ArrayList<>();
         getElementsByTagName(list, body, elementName);
         return list.toArray(new Element[list.size()]);
@@ -668,6 +867,13 @@ public class XmlUtil {
      */
     public static Element GetChildWithAttribute(Element root, String tag,
                                                 String attribute, String value) {
+        DomIndex index = DomIndex.find(root);
+        if (index != null)
+            return index.getChildWithAttribute(root, tag, attribute, value);
+        return scanChildWithAttribute(root, tag, attribute, value);
+    }
+
+    static Element scanChildWithAttribute(Element root, String tag, String attribute, String value) {
         for (Node n = root.getFirstChild(); n != null; n = n.getNextSibling()) {
             if (n instanceof Element) {
                 if (((Element)n).getTagName().equals(tag) && ((Element)n).getAttribute(attribute).equals(value))
@@ -0,0 +1,170 @@
+package com.myronalgebra.xmltojava;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Turns reflective members into MethodHandles with uniform erased types so that
+ * they can be called with invokeExact from the binding path.
+ * <ul>
+ *     <li>assigners have type (Object instance, Object value)void; the instance is ignored for static members</li>
+ *     <li>getters have type (Object instance)Object; the instance is ignored for static members</li>
+ *     <li>converters have type (String)Object</li>
+ *     <li>factories have type ()Object</li>
+ *     <li>text assigners have type (Object instance, String text)void; they parse the text of a primitive
+ *     field with Integer.parseInt and friends and assign it without boxing</li>
+ *     <li>element parsers have type (Object array, int index, String text)void; they parse and store
+ *     one element of a primitive array</li>
+ * </ul>
+ * Each method returns null if the member is not accessible, in which case the caller reports an error
+ * when the member is used.
+ */
+final class Accessors {
+    static final MethodType ASSIGNER = MethodType.methodType(void.class, Object.class, Object.class);
+    static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+    static final MethodType CONVERTER = MethodType.methodType(Object.class, String.class);
+    static final MethodType FACTORY = MethodType.methodType(Object.class);
+    static final MethodType TEXT_ASSIGNER = MethodType.methodType(void.class, Object.class, String.class);
+    static final MethodType ELEMENT_PARSER = MethodType.methodType(void.class, Object.class, int.class, String.class);
+
+    private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+    private static final Map<Class<?>, MethodHandle> parsers = new HashMap<>();
+
+    static {
+        try {
+            parsers.put(int.class, parser(Integer.class, "parseInt", int.class));
+            parsers.put(long.class, parser(Long.class, "parseLong", long.class));
+            parsers.put(short.class, parser(Short.class, "parseShort", short.class));
+            parsers.put(byte.class, parser(Byte.class, "parseByte", byte.class));
+            parsers.put(float.class, parser(Float.class, "parseFloat", float.class));
+            parsers.put(double.class, parser(Double.class, "parseDouble", double.class));
+            parsers.put(boolean.class, parser(Boolean.class, "parseBoolean", boolean.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static MethodHandle parser(Class<?> wrapper, String name, Class<?> primitive) throws ReflectiveOperationException {
+        return lookup.findStatic(wrapper, name, MethodType.methodType(primitive, String.class));
+    }
+
+    private Accessors() {
+    }
+
+    static MethodHandle setter(Method setter) {
+        try {
+            MethodHandle h = lookup.unreflect(setter);
+            if (Modifier.isStatic(setter.getModifiers()))
+                h = MethodHandles.dropArguments(h, 0, Object.class);
+            return h.asType(ASSIGNER);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    static MethodHandle fieldSetter(Field field) {
+        try {
+            MethodHandle h = lookup.unreflectSetter(field);
+            if (Modifier.isStatic(field.getModifiers()))
+                h = MethodHandles.dropArguments(h, 0, Object.class);
+            return h.asType(ASSIGNER);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    static MethodHandle getter(Method getter) {
+        try {
+            MethodHandle h = lookup.unreflect(getter);
+            if (Modifier.isStatic(getter.getModifiers()))
+                h = MethodHandles.dropArguments(h, 0, Object.class);
+            return h.asType(GETTER);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    static MethodHandle fieldGetter(Field field) {
+        try {
+            MethodHandle h = lookup.unreflectGetter(field);
+            if (Modifier.isStatic(field.getModifiers()))
+                h = MethodHandles.dropArguments(h, 0, Object.class);
+            return h.asType(GETTER);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    static MethodHandle converter(Method valueOf) {
+        try {
+            return lookup.unreflect(valueOf).asType(CONVERTER);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    static MethodHandle factory(Constructor<?> constructor) {
+        try {
+            return lookup.unreflectConstructor(constructor).asType(FACTORY);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param setter a public setter whose parameter is primitive
+     * @return text assigner or null if the parameter type has no parser or the setter is not accessible
+     */
+    static MethodHandle textSetter(Method setter) {
+        MethodHandle parser = parsers.get(setter.getParameterTypes()[0]);
+        if (parser == null)
+            return null;
+        try {
+            return textAssigner(lookup.unreflect(setter), Modifier.isStatic(setter.getModifiers()), parser);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param field a public primitive field
+     * @return text assigner or null if the field type has no parser or the field is not accessible
+     */
+    static MethodHandle textFieldSetter(Field field) {
+        MethodHandle parser = parsers.get(field.getType());
+        if (parser == null)
+            return null;
+        try {
+            return textAssigner(lookup.unreflectSetter(field), Modifier.isStatic(field.getModifiers()), parser);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    private static MethodHandle textAssigner(MethodHandle h, boolean isStatic, MethodHandle parser) {
+        if (isStatic)
+            h = MethodHandles.dropArguments(h, 0, Object.class);
+        h = h.asType(MethodType.methodType(void.class, Object.class, parser.type().returnType()));
+        return MethodHandles.filterArguments(h, 1, parser);
+    }
+
+    /**
+     * @param arrayClass a primitive array class such as int[]
+     * @return element parser or null if the component type has no parser
+     */
+    static MethodHandle elementParser(Class<?> arrayClass) {
+        MethodHandle parser = parsers.get(arrayClass.getComponentType());
+        if (parser == null)
+            return null;
+        MethodHandle h = MethodHandles.arrayElementSetter(arrayClass);
+        h = h.asType(MethodType.methodType(void.class, Object.class, int.class, parser.type().returnType()));
+        return MethodHandles.filterArguments(h, 2, parser);
+    }
+}
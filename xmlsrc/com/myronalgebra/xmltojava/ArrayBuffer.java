@@ -0,0 +1,62 @@
+package com.myronalgebra.xmltojava;
+
+import java.lang.reflect.Array;
+
+/**
+ * Accumulates the elements of an array whose length is known only at the end tag of
+ * its element. Primitive elements are stored by element parsers directly into the
+ * current array, so they are never boxed.
+ */
+final class ArrayBuffer {
+    private final Class<?> componentType;
+    private Object array;
+    private int capacity = 8;
+    private int size;
+
+    ArrayBuffer(Class<?> componentType) {
+        this.componentType = componentType;
+        this.array = Array.newInstance(componentType, capacity);
+    }
+
+    /**
+     * @return the array to store the next element into at index size(), grown if it is full
+     */
+    Object next() {
+        if (size == capacity) {
+            capacity *= 2;
+            Object grown = Array.newInstance(componentType, capacity);
+            System.arraycopy(array, 0, grown, 0, size);
+            array = grown;
+        }
+        return array;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Counts an element that was stored into next() at index size().
+     */
+    void added() {
+        size++;
+    }
+
+    /**
+     * @param value element of an array of references
+     */
+    void add(Object value) {
+        ((Object[]) next())[size++] = value;
+    }
+
+    /**
+     * @return array of exactly size() elements
+     */
+    Object toArray() {
+        if (size == capacity)
+            return array;
+        Object result = Array.newInstance(componentType, size);
+        System.arraycopy(array, 0, result, 0, size);
+        return result;
+    }
+}
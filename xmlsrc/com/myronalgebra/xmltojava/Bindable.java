@@ -0,0 +1,16 @@
+package com.myronalgebra.xmltojava;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class for which the binder processor generates a Binder at compile time.
+ * XmlToJava assigns the fields of a bindable class through its generated binder
+ * and falls back to reflection when no binder was generated.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Bindable {
+}
@@ -0,0 +1,36 @@
+package com.myronalgebra.xmltojava;
+
+/**
+ * Creates and populates instances of one class without reflection.
+ * <p>Binders are generated for classes annotated with @Bindable. The binder of class
+ * p.Outer$Inner is named p.Outer_InnerBinder. Names passed to a binder are the names of
+ * the bindings of the class: the field name, or for a setter without a matching field
+ * the property name as it appears in the setter (setLevel: "Level").</p>
+ * <p>A method that cannot handle a name returns false and XmlToJava falls back to reflection.</p>
+ * @param <T> the bound class
+ */
+public interface Binder<T> {
+    /**
+     * @return new instance or null if the class has no public no-argument constructor
+     */
+    T newInstance();
+
+    /**
+     * Parses the text of a simple element and assigns it.
+     * @param target instance, ignored for static fields
+     * @param name binding name
+     * @param text trimmed text content
+     * @return false if the binder cannot parse or assign this name
+     * @throws RuntimeException if the text cannot be parsed
+     */
+    boolean assignText(T target, String name, String text);
+
+    /**
+     * Assigns a value that has already been read.
+     * @param target instance, ignored for static fields
+     * @param name binding name
+     * @param value instance of the field's class
+     * @return false if the binder cannot assign this name
+     */
+    boolean assign(T target, String name, Object value);
+}
@@ -0,0 +1,280 @@
+package com.myronalgebra.xmltojava;
+
+import com.myronalgebra.logger.Logger;
+import com.myronalgebra.logger.NamedLogger;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable description of how XML elements bind to a class.
+ * <p>A plan is compiled once per class by inspecting its public fields, setters, constructor
+ * and valueOf method. Plans are cached per Class so that reading an element never repeats
+ * reflective discovery; the reader only looks up a tag name in the plan.</p>
+ */
+class BindingPlan {
+    private static final NamedLogger logger = Logger.get(BindingPlan.class);
+
+    /**
+     * The arrangement of an element's content as described in the README.
+     */
+    enum Category {Simple, Aggregate, Collection, Map, Array}
+
+    private static final ClassValue<BindingPlan> plans = new ClassValue<BindingPlan>() {
+        @Override
+        protected BindingPlan computeValue(Class<?> type) {
+            return new BindingPlan(type);
+        }
+    };
+
+    private static final Map<Class<?>, Class<?>> typeTable = new HashMap<Class<?>, Class<?>>() {{
+        put(String.class, StringConverter.class);
+        put(int.class, Integer.class);
+        put(byte.class, Byte.class);
+        put(short.class, Short.class);
+        put(long.class, Long.class);
+        put(float.class, Float.class);
+        put(double.class, Double.class);
+        put(char.class, Character.class);
+        put(boolean.class, Boolean.class);
+        put(void.class, Void.class);
+    }};
+
+    private static class StringConverter {
+        public static String valueOf(String string) {
+            return string;
+        }
+    }
+
+    /**
+     * Binds one tag name of an aggregate onto a public field or a public setter.
+     */
+    static class Binding {
+        final String name;
+        final Field field;
+        final Method setter;
+        final Class<?> valueClass;
+        final Type genericType;
+        final MethodHandle assigner;
+        /** parses and assigns a primitive without boxing; null if the value class is not primitive */
+        final MethodHandle textAssigner;
+        /** reads the field or calls the getter of a setter; null if the value cannot be read */
+        final MethodHandle getter;
+        /** the tag name JavaToXml writes: the field name or the property name of the setter starting in lower case */
+        final String elementName;
+        final boolean isStatic;
+        /** the field, setter or getter is annotated with @Hidden */
+        final boolean hidden;
+
+        Binding(String name, Field field, Method setter, Method getter, Class<?> valueClass, Type genericType) {
+            this.name = name;
+            this.field = field;
+            this.setter = setter;
+            this.valueClass = valueClass;
+            this.genericType = genericType;
+            this.assigner = setter != null ? Accessors.setter(setter) : Accessors.fieldSetter(field);
+            if (!valueClass.isPrimitive())
+                this.textAssigner = null;
+            else
+                this.textAssigner = setter != null ? Accessors.textSetter(setter) : Accessors.textFieldSetter(field);
+            if (field != null)
+                this.getter = Accessors.fieldGetter(field);
+            else
+                this.getter = getter != null ? Accessors.getter(getter) : null;
+            this.elementName = field != null ? name : name.substring(0, 1).toLowerCase() + name.substring(1);
+            this.isStatic = Modifier.isStatic((field != null ? field : setter).getModifiers());
+            this.hidden = isHidden(field) || isHidden(setter) || isHidden(getter);
+        }
+
+        private static boolean isHidden(AccessibleObject member) {
+            return member != null && member.isAnnotationPresent(Hidden.class);
+        }
+    }
+
+    final Class<?> type;
+    final Class<?> wrapper;
+    final Category category;
+    final Method converter;
+    final String converterError;
+    final Constructor<?> constructor;
+    final MethodHandle parser;
+    final MethodHandle factory;
+    /** parses and stores one element of a primitive array; null for other classes */
+    final MethodHandle elementParser;
+    /** generated binder of a @Bindable class; null if there is none */
+    final Binder<Object> binder;
+    private final Map<String, Binding> bindings;
+    /** readable bindings of an aggregate, each once: fields in declaration order, then setter properties by name */
+    final List<Binding> properties;
+
+    private BindingPlan(Class<?> type) {
+        this.type = type;
+        Class<?> w = typeTable.get(type);
+        this.wrapper = w == null ? type : w;
+
+        Method valueOf = null;
+        String valueOfError = null;
+        try {
+            Method m = wrapper.getMethod("valueOf", String.class);
+            if (Modifier.isStatic(m.getModifiers()) && Modifier.isPublic(m.getModifiers()))
+                valueOf = m;
+            else
+                valueOfError = String.format("%s.valueOf method must be public and static", wrapper.getSimpleName());
+        } catch (NoSuchMethodException e) {
+        }
+        this.converter = valueOf;
+        this.converterError = valueOfError;
+        this.parser = valueOf != null ? Accessors.converter(valueOf) : null;
+
+        if (valueOf != null || valueOfError != null)
+            category = Category.Simple;
+        else if (Collection.class.isAssignableFrom(wrapper))
+            category = Category.Collection;
+        else if (Map.class.isAssignableFrom(wrapper))
+            category = Category.Map;
+        else if (wrapper.isArray())
+            category = Category.Array;
+        else
+            category = Category.Aggregate;
+
+        Constructor<?> init = null;
+        try {
+            init = wrapper.getConstructor();
+        } catch (NoSuchMethodException e) {
+        }
+        this.constructor = init;
+        this.factory = init != null ? Accessors.factory(init) : null;
+        this.elementParser = category == Category.Array && wrapper.getComponentType().isPrimitive() ? Accessors.elementParser(wrapper) : null;
+
+        this.bindings = category == Category.Aggregate ? compileBindings(wrapper) : Collections.emptyMap();
+        this.properties = category == Category.Aggregate ? compileProperties(wrapper, bindings) : Collections.emptyList();
+        this.binder = category == Category.Aggregate && wrapper.isAnnotationPresent(Bindable.class) ? loadBinder(wrapper) : null;
+    }
+
+    /**
+     * @param type a class annotated with @Bindable
+     * @return its generated binder or null if it was not generated
+     */
+    @SuppressWarnings("unchecked")
+    private static Binder<Object> loadBinder(Class<?> type) {
+        String name = type.getName().replace('$', '_') + "Binder";
+        try {
+            Class<?> binderClass = Class.forName(name, true, type.getClassLoader());
+            return (Binder<Object>) binderClass.getConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            logger.warn("no binder %s for @Bindable class %s, using reflection", name, type.getSimpleName());
+            return null;
+        }
+    }
+
+    /**
+     * Returns the cached plan for a class, compiling it on first use.
+     * @param type the class of an element
+     * @return plan
+     */
+    static BindingPlan of(Class<?> type) {
+        return plans.get(type);
+    }
+
+    /**
+     * Promotes String and primitive types to classes that have a valueOf method.
+     * @param type a class
+     * @return the wrapper or the class itself
+     */
+    static Class<?> typeWrapperFor(Class<?> type) {
+        Class<?> result = typeTable.get(type);
+        if (result == null)
+            return type;
+        return result;
+    }
+
+    /**
+     * @param tagName name of a subelement of an aggregate element
+     * @return binding for the tag or null if the class has no matching field or setter
+     */
+    Binding get(String tagName) {
+        return bindings.get(tagName);
+    }
+
+    boolean isSimple() {
+        return category == Category.Simple;
+    }
+
+    /**
+     * Public fields take precedence over setters with no matching field. A public field
+     * with a setter of the same type is assigned through the setter.
+     */
+    private static Map<String, Binding> compileBindings(Class<?> aClass) {
+        Map<String, Binding> result = new HashMap<>();
+        Method[] methods = aClass.getMethods();
+        for (Method m : methods) {
+            String name = m.getName();
+            if (name.length() > 3 && name.startsWith("set") && m.getParameterCount() == 1) {
+                String property = name.substring(3);
+                Binding binding = new Binding(property, null, m, findGetter(methods, property, m), m.getParameterTypes()[0], m.getGenericParameterTypes()[0]);
+                // the first matching setter wins as it did when setters were searched by name
+                result.putIfAbsent(property, binding);
+                result.putIfAbsent(property.substring(0, 1).toLowerCase() + property.substring(1), binding);
+            }
+        }
+        for (Field f : aClass.getFields()) {
+            if (result.get(f.getName()) != null && result.get(f.getName()).field != null)
+                continue;
+            Method setter = findSetter(methods, f);
+            result.put(f.getName(), new Binding(f.getName(), f, setter, null, f.getType(), f.getGenericType()));
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    private static List<Binding> compileProperties(Class<?> aClass, Map<String, Binding> bindings) {
+        Set<Binding> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Binding> fields = new ArrayList<>();
+        List<Binding> setters = new ArrayList<>();
+        for (Field f : aClass.getFields()) {
+            Binding binding = bindings.get(f.getName());
+            if (binding != null && f.equals(binding.field) && binding.getter != null && seen.add(binding))
+                fields.add(binding);
+        }
+        for (Binding binding : bindings.values()) {
+            // a setter whose property is also a public field is written as the field
+            if (binding.field == null && binding.getter != null && bindings.get(binding.elementName) == binding && seen.add(binding))
+                setters.add(binding);
+        }
+        setters.sort(Comparator.comparing(b -> b.elementName));
+        fields.addAll(setters);
+        return Collections.unmodifiableList(fields);
+    }
+
+    /**
+     * @return the public getX or isX method returning the parameter type of the setter, or null
+     */
+    private static Method findGetter(Method[] methods, String property, Method setter) {
+        Class<?> type = setter.getParameterTypes()[0];
+        for (Method m : methods) {
+            String name = m.getName();
+            if (m.getParameterCount() == 0 && m.getReturnType() == type
+                    && Modifier.isStatic(m.getModifiers()) == Modifier.isStatic(setter.getModifiers())
+                    && (name.equals("get" + property) || name.equals("is" + property) && (type == boolean.class || type == Boolean.class)))
+                return m;
+        }
+        return null;
+    }
+
+    private static Method findSetter(Method[] methods, Field field) {
+        String setterName = "set" + field.getName().substring(0, 1).toUpperCase() + field.getName().substring(1);
+        for (Method m : methods) {
+            if (m.getName().equals(setterName) && m.getParameterCount() == 1 && m.getParameterTypes()[0] == field.getType())
+                return m;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,163 @@
+package com.myronalgebra.xmltojava;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * State and operations shared by the DOM and streaming readers. A reader is created
+ * for a single load and reports errors to the load's context.
+ */
+abstract class BindingReader {
+    protected final XmlToJava owner;
+    protected final LoadContext context;
+
+    BindingReader(XmlToJava owner, LoadContext context) {
+        this.owner = owner;
+        this.context = context;
+    }
+
+    void error(String format, String... params) {
+        context.error(format, params);
+    }
+
+    void error(Exception ex, String format, String... params) {
+        context.error(ex, format, params);
+    }
+
+    XmlToJava.Alias loadAlias(String tagName) throws ClassNotFoundException {
+        return owner.loadAlias(tagName);
+    }
+
+    /**
+     * Passes an anonymous instance to the consumer of its alias and logs it if echoOptions is set.
+     * @param alias
+     * @param object
+     */
+    void deliver(XmlToJava.Alias alias, Object object) {
+        owner.deliver(alias, object);
+    }
+
+    /**
+     * Creates an instance through the no-argument constructor of a class.
+     * @param plan plan of the class to instantiate
+     * @return new instance
+     * @throws Exception if the class has no accessible no-argument constructor or the constructor throws
+     */
+    Object newInstance(BindingPlan plan) throws Exception {
+        if (plan.binder != null) {
+            Object instance = plan.binder.newInstance();
+            if (instance != null)
+                return instance;
+        }
+        if (plan.constructor == null)
+            throw new NoSuchMethodException(plan.wrapper.getName() + ".<init>()");
+        if (plan.factory == null)
+            throw new IllegalAccessException(plan.constructor.toString());
+        try {
+            return (Object) plan.factory.invokeExact();
+        } catch (Exception | Error ex) {
+            throw ex;
+        } catch (Throwable t) {
+            throw new InvocationTargetException(t);
+        }
+    }
+
+    void assignField(BindingPlan plan, Object instance, BindingPlan.Binding binding, Object fieldValue) {
+        if (plan.binder != null && plan.binder.assign(instance, binding.name, fieldValue))
+            return;
+        String kind = binding.setter != null ? "setter for field" : "field";
+        if (binding.assigner == null) {
+            error("%s %s in class %s is not accessible", kind, binding.name, plan.type.getSimpleName());
+            return;
+        }
+        try {
+            binding.assigner.invokeExact(instance, fieldValue);
+        } catch (Throwable t) {
+            error("%s %s in class %s is not %s", kind, binding.name, plan.type.getSimpleName(),
+                    binding.setter != null ? "invocable" : "setable");
+        }
+    }
+
+    /**
+     * Assigns the text content of a simple element, parsed by the generated binder
+     * if there is one, by a primitive parser if the field is primitive, or by the valueOf
+     * method of the field's class.
+     * @param plan plan of the class of instance
+     * @param fieldType type of the bound field
+     * @param text trimmed text content
+     * @param parentTag used in error messages
+     */
+    void assignText(BindingPlan plan, Object instance, BindingPlan.Binding binding, ResolvedType fieldType, String text, String parentTag) {
+        if (plan.binder != null) {
+            try {
+                if (plan.binder.assignText(instance, binding.name, text))
+                    return;
+            } catch (RuntimeException ex) {
+                error("%s.%s: %s", parentTag, binding.name, ex.getMessage());
+                return;
+            }
+        }
+        if (binding.textAssigner != null) {
+            try {
+                binding.textAssigner.invokeExact(instance, text);
+            } catch (Throwable t) {
+                error("%s.%s: %s", parentTag, binding.name, t.getMessage());
+            }
+            return;
+        }
+        Object value = convert(text, fieldType.plan, parentTag, binding.name);
+        if (value != null)
+            assignField(plan, instance, binding, value);
+    }
+
+    /**
+     * Parses the text content of a simple element with the valueOf method of its class.
+     * @param text trimmed text content
+     * @param plan plan of a simple class
+     * @param parentTag used in error messages
+     * @param name used in error messages
+     * @return value or null if the text cannot be parsed
+     */
+    Object convert(String text, BindingPlan plan, String parentTag, String name) {
+        if (plan.converter == null) {
+            error(plan.converterError);
+            return null;
+        }
+        if (plan.parser == null) {
+            error("%s.%s: %s is not accessible", parentTag, name, plan.converter.toString());
+            return null;
+        }
+        try {
+            return (Object) plan.parser.invokeExact(text);
+        } catch (Throwable t) {
+            error("%s.%s: %s", parentTag, name, t.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * @param type resolved type of an array
+     * @return buffer for the elements of the array
+     * @throws Exception if the elements cannot be read
+     */
+    ArrayBuffer newArrayBuffer(ResolvedType type) throws Exception {
+        Class<?> componentType = type.raw.getComponentType();
+        if (componentType.isPrimitive() && type.plan.elementParser == null)
+            throw new Exception(String.format("array of %s not supported", componentType.getName()));
+        return new ArrayBuffer(componentType);
+    }
+
+    /**
+     * Parses one element of a primitive array into the buffer.
+     * @return false if the text cannot be parsed, in which case the error has been reported
+     */
+    boolean parseElement(ResolvedType type, ArrayBuffer buffer, String text, String parentTag, String tag) {
+        try {
+            type.plan.elementParser.invokeExact(buffer.next(), buffer.size(), text);
+            buffer.added();
+            return true;
+        } catch (Throwable t) {
+            error("%s.%s: %s", parentTag, tag, t.getMessage());
+            return false;
+        }
+    }
+}
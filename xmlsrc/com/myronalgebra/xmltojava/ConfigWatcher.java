@@ -0,0 +1,295 @@
+package com.myronalgebra.xmltojava;
+
+import com.myronalgebra.logger.Logger;
+import com.myronalgebra.logger.NamedLogger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Reloads XML files when they change and publishes what they contain.
+ * <p>Files, or directories of *.xml files, are registered with a WatchService. Bursts of events,
+ * such as an editor saving a file in several writes, are debounced: a file is reloaded once no
+ * event for it has arrived for the debounce interval. Reloads run on one background thread with
+ * a Reloader per file, so only changed elements are bound.</p>
+ * <p>The changed instances of a reload are passed to the consumers of their aliases and then
+ * published together in a new Snapshot. A reload with errors, e.g. of a half-written file,
+ * delivers and publishes nothing. Request threads call snapshot(), which reads a volatile
+ * reference and never blocks on a reload.</p>
+ * <pre>
+ * ConfigWatcher watcher = new ConfigWatcher(reader).watch(Paths.get("config.xml")).start();
+ * Settings settings = watcher.snapshot().get("settings");
+ * </pre>
+ */
+public class ConfigWatcher implements Closeable {
+    private static final NamedLogger logger = Logger.get(ConfigWatcher.class);
+    private final XmlToJava reader;
+    private final WatchService watchService;
+    private final Map<Path, Reloader> files = new ConcurrentHashMap<>();
+    private final Set<Path> directories = ConcurrentHashMap.newKeySet();
+    private final Set<Path> registered = ConcurrentHashMap.newKeySet();
+    private final Queue<Path> requested = new ConcurrentLinkedQueue<>();
+    // accessed only by the thread that reloads
+    private final Map<Path, Map<String, Reloader.Update>> published = new LinkedHashMap<>();
+    private final Map<Path, Long> pending = new HashMap<>();
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptyMap(), 0);
+    private volatile long debounceMillis = 200;
+    private volatile BiConsumer<Path, LoadContext> listener;
+    private volatile boolean closed;
+    private Thread thread;
+
+    /**
+     * The instances published by one reload. A snapshot is immutable.
+     */
+    public static final class Snapshot {
+        private final Map<String, List<Object>> instances;
+        private final long version;
+
+        private Snapshot(Map<String, List<Object>> instances, long version) {
+            this.instances = instances;
+            this.version = version;
+        }
+
+        /**
+         * @param tag alias of a top-level element
+         * @param <T> class of the alias
+         * @return the instance of the first element with the tag or null if there is none
+         */
+        @SuppressWarnings("unchecked")
+        public <T> T get(String tag) {
+            List<Object> list = instances.get(tag);
+            return list == null ? null : (T) list.get(0);
+        }
+
+        /**
+         * @param tag alias of a top-level element
+         * @return the instances of all elements with the tag, in the order of their files and documents
+         */
+        public List<Object> getAll(String tag) {
+            List<Object> list = instances.get(tag);
+            return list == null ? Collections.emptyList() : list;
+        }
+
+        /**
+         * @return number of reloads published before this snapshot, 0 for the empty snapshot
+         */
+        public long getVersion() {
+            return version;
+        }
+    }
+
+    /**
+     * @param reader reader with the aliases of the watched files
+     * @throws IOException if the file system has no WatchService
+     */
+    public ConfigWatcher(XmlToJava reader) throws IOException {
+        this.reader = reader;
+        this.watchService = FileSystems.getDefault().newWatchService();
+    }
+
+    /**
+     * @param millis quiet time after the last event for a file before it is reloaded; 200 by default
+     * @return this
+     */
+    public ConfigWatcher debounce(long millis) {
+        if (millis < 0)
+            throw new IllegalArgumentException("debounce must not be negative");
+        debounceMillis = millis;
+        return this;
+    }
+
+    /**
+     * @param listener called on the watcher thread after every reload, whether or not it succeeded
+     * @return this
+     */
+    public ConfigWatcher onReload(BiConsumer<Path, LoadContext> listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Watches a file. A file added after start is loaded by the watcher thread.
+     * @param file
+     * @return this
+     * @throws IOException if the directory of the file cannot be watched
+     */
+    public ConfigWatcher watch(Path file) throws IOException {
+        file = file.toAbsolutePath().normalize();
+        register(file.getParent());
+        if (files.putIfAbsent(file, reader.reloader()) == null)
+            requested.add(file);
+        return this;
+    }
+
+    /**
+     * Watches every *.xml file in a directory, including files created later.
+     * @param directory
+     * @return this
+     * @throws IOException if the directory cannot be watched or listed
+     */
+    public ConfigWatcher watchDirectory(Path directory) throws IOException {
+        directory = directory.toAbsolutePath().normalize();
+        register(directory);
+        directories.add(directory);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.xml")) {
+            for (Path file : stream) {
+                if (files.putIfAbsent(file, reader.reloader()) == null)
+                    requested.add(file);
+            }
+        }
+        return this;
+    }
+
+    private void register(Path directory) throws IOException {
+        if (registered.add(directory)) {
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+    }
+
+    /**
+     * Loads the watched files on the calling thread, then starts watching them in the background.
+     * @return this
+     */
+    public synchronized ConfigWatcher start() {
+        if (thread != null)
+            throw new IllegalStateException("ConfigWatcher already started");
+        reloadRequested();
+        thread = new Thread(this::run, "ConfigWatcher");
+        thread.setDaemon(true);
+        thread.start();
+        return this;
+    }
+
+    /**
+     * @return the instances of the last successful reloads; never null
+     */
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Stops watching. A reload in progress completes.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        watchService.close();
+        Thread t;
+        synchronized (this) {
+            t = thread;
+        }
+        if (t != null)
+            t.interrupt();
+    }
+
+    private void run() {
+        try {
+            while (!closed) {
+                long pollMillis = Math.max(10, Math.min(debounceMillis / 4, 100));
+                WatchKey key = watchService.poll(pollMillis, TimeUnit.MILLISECONDS);
+                long now = System.nanoTime();
+                if (key != null) {
+                    queueEvents(key, now);
+                    key.reset();
+                }
+                reloadRequested();
+                reloadSettled(now);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    private void queueEvents(WatchKey key, long now) {
+        Path directory = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                for (Path file : files.keySet()) {
+                    if (file.getParent().equals(directory))
+                        pending.put(file, now);
+                }
+                continue;
+            }
+            Path file = directory.resolve((Path) event.context());
+            if (files.containsKey(file)) {
+                pending.put(file, now);
+            } else if (directories.contains(directory) && file.getFileName().toString().endsWith(".xml")) {
+                files.putIfAbsent(file, reader.reloader());
+                pending.put(file, now);
+            }
+        }
+    }
+
+    /**
+     * Reloads files added by watch or watchDirectory without waiting for an event.
+     */
+    private void reloadRequested() {
+        Path file;
+        while ((file = requested.poll()) != null) {
+            pending.remove(file);
+            reload(file);
+        }
+    }
+
+    private void reloadSettled(long now) {
+        long debounce = TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+        Iterator<Map.Entry<Path, Long>> it = pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Path, Long> entry = it.next();
+            if (now - entry.getValue() >= debounce) {
+                it.remove();
+                reload(entry.getKey());
+            }
+        }
+    }
+
+    private void reload(Path file) {
+        Reloader reloader = files.get(file);
+        if (reloader == null || !Files.isRegularFile(file))
+            return;
+        List<Reloader.Update> updates = new ArrayList<>();
+        LoadContext context = reloader.reload(file.toFile(), updates);
+        if (!context.isError())
+            publish(file, reloader, updates);
+        BiConsumer<Path, LoadContext> l = listener;
+        if (l != null)
+            l.accept(file, context);
+    }
+
+    private void publish(Path file, Reloader reloader, List<Reloader.Update> updates) {
+        Map<String, Reloader.Update> changed = new HashMap<>();
+        for (Reloader.Update update : updates) {
+            changed.put(update.key, update);
+            try {
+                reader.deliver(update.alias, update.object);
+            } catch (RuntimeException e) {
+                logger.error(e, "consumer of <%s> in %s failed", update.tag, file.toString());
+            }
+        }
+        Map<String, Reloader.Update> previous = published.getOrDefault(file, Collections.emptyMap());
+        Map<String, Reloader.Update> current = new LinkedHashMap<>();
+        for (String key : reloader.keys()) {
+            Reloader.Update update = changed.get(key);
+            if (update == null)
+                update = previous.get(key);
+            if (update != null)
+                current.put(key, update);
+        }
+        published.put(file, current);
+
+        Map<String, List<Object>> instances = new HashMap<>();
+        for (Map<String, Reloader.Update> fileUpdates : published.values()) {
+            for (Reloader.Update update : fileUpdates.values())
+                instances.computeIfAbsent(update.tag, k -> new ArrayList<>()).add(update.object);
+        }
+        for (Map.Entry<String, List<Object>> entry : instances.entrySet())
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        snapshot = new Snapshot(Collections.unmodifiableMap(instances), snapshot.getVersion() + 1);
+    }
+}
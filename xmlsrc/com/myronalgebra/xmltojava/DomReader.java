@@ -0,0 +1,371 @@
+package com.myronalgebra.xmltojava;
+
+import com.myronalgebra.xmltojava.XmlToJava.Alias;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Binds the elements of a parsed Document. A DomReader is created for each load.
+ */
+class DomReader extends BindingReader {
+
+    DomReader(XmlToJava owner, LoadContext context) {
+        super(owner, context);
+    }
+
+    /**
+     * Elements contained directly within the root must match classnames provided in the classes list.
+     *
+     * @param root
+     */
+    void readDocRoot(Element root) {
+        try {
+            Alias alias = loadAlias(root.getTagName());
+            readAnonymous(root, alias);
+            return;
+        } catch (ClassNotFoundException e) {
+            // continue
+        } catch (Exception e) {
+            error(e, "Unable to load <%s>", root.getTagName());
+            return;
+        }
+        if (owner.parallelism > 1) {
+            readParallel(root);
+            return;
+        }
+        for (Node child = root.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element)
+                readTopLevel((Element) child);
+        }
+    }
+
+    /**
+     * Binds an aliased root or a child of the virtual root without delivering it.
+     * @param e
+     * @return instance or null if an error was reported
+     */
+    Object bindTopLevel(Element e) {
+        try {
+            return bindAnonymous(e, loadAlias(e.getTagName()));
+        } catch (Exception ex) {
+            error(ex, "Unable to load <%s>", e.getTagName());
+            return null;
+        }
+    }
+
+    /**
+     * Reads an aliased root or a child of the virtual root as an anonymous instance.
+     * @param e
+     */
+    void readTopLevel(Element e) {
+        try {
+            Alias alias = loadAlias(e.getTagName());
+            readAnonymous(e, alias);
+        } catch (Exception ex) {
+            error(ex, "Unable to load <%s>", e.getTagName());
+        }
+    }
+
+    /** tasks in flight per thread of a parallel load; bounds the bound but undelivered instances */
+    static final int WINDOW_PER_THREAD = 64;
+
+    /**
+     * A child submitted for binding, kept until it has been delivered.
+     */
+    private static final class Pending {
+        final Alias alias;
+        final String tag;
+        final Future<Object> result;
+
+        Pending(Alias alias, String tag, Future<Object> result) {
+            this.alias = alias;
+            this.tag = tag;
+            this.result = result;
+        }
+    }
+
+    /**
+     * Binds the children of the root in a fork-join pool. Each child is an independent
+     * anonymous instance, so tasks share nothing but the read-only document. At most
+     * WINDOW_PER_THREAD children per thread are in flight; the oldest is completed and
+     * dropped before another is submitted, so memory does not grow with the document.
+     * @param root
+     */
+    private void readParallel(Element root) {
+        ForkJoinPool pool = new ForkJoinPool(owner.parallelism);
+        int window = owner.parallelism * WINDOW_PER_THREAD;
+        ArrayDeque<Pending> pending = new ArrayDeque<>(window);
+        try {
+            for (Node child = root.getFirstChild(); child != null; child = child.getNextSibling()) {
+                if (child instanceof Element) {
+                    Element e = (Element) child;
+                    Alias alias;
+                    try {
+                        alias = loadAlias(e.getTagName());
+                    } catch (ClassNotFoundException ex) {
+                        error(ex, "Unable to load <%s>", e.getTagName());
+                        continue;
+                    }
+                    if (pending.size() >= window && !complete(pending.removeFirst()))
+                        return;
+                    pending.addLast(new Pending(alias, e.getTagName(), pool.submit(() -> {
+                        try {
+                            Object object = bindAnonymous(e, alias);
+                            if (owner.orderedDelivery)
+                                return object;
+                            deliver(alias, object);
+                            return null;
+                        } catch (Exception ex) {
+                            error(ex, "Unable to load <%s>", e.getTagName());
+                            return FAILED;
+                        }
+                    })));
+                }
+            }
+            while (!pending.isEmpty()) {
+                if (!complete(pending.removeFirst()))
+                    return;
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Waits for a child to be bound and, with ordered delivery, delivers it on the loading thread.
+     * @return false if the loading thread was interrupted
+     */
+    private boolean complete(Pending task) {
+        Object object;
+        try {
+            object = task.result.get();
+        } catch (ExecutionException ex) {
+            error(ex, "Unable to load <%s>", task.tag);
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            error(ex, "Interrupted while loading <%s>", task.tag);
+            return false;
+        }
+        if (owner.orderedDelivery && object != FAILED) {
+            try {
+                deliver(task.alias, object);
+            } catch (Exception ex) {
+                error(ex, "Unable to load <%s>", task.tag);
+            }
+        }
+        return true;
+    }
+
+    private static final Object FAILED = new Object();
+
+    private void readAnonymous(Element e, Alias alias) throws Exception {
+        deliver(alias, bindAnonymous(e, alias));
+    }
+
+    private Object bindAnonymous(Element e, Alias alias) throws Exception {
+        ResolvedType type = alias.type;
+        BindingPlan plan = type.plan;
+        if (plan.category == BindingPlan.Category.Collection) {
+            return readCollection(e, type);
+        } else if (plan.category == BindingPlan.Category.Map) {
+            return readMap(e, type);
+        } else if (plan.isSimple() || plan.category == BindingPlan.Category.Array) {
+            return readValue(e, type);
+        } else {
+            return readAggregate(e, type);
+        }
+    }
+
+    private Object readAggregate(Element e, ResolvedType type) throws Exception {
+        Object a = newInstance(type.plan);
+        readFields(e, type, a);
+        return a;
+    }
+
+    private Object readCollection(Element e, ResolvedType type) throws Exception {
+        BindingPlan plan = type.plan;
+        if (plan.constructor == null)
+            throw new Exception(String.format("cannot create instance of %s", plan.wrapper.getSimpleName()));
+        Collection c = (Collection) newInstance(plan);
+        ResolvedType itemType = type.item();
+        if (itemType != null) {
+            readCollectionItems(e, itemType, ((Object x) -> c.add(x)));
+        } else {
+            error("%s: unable to determing item type", e.getTagName());
+        }
+        return c;
+    }
+
+    /**
+     * Reads the subelements of e as array elements. Like collection items, their tag names are ignored.
+     */
+    private Object readArray(Element e, ResolvedType type) throws Exception {
+        ArrayBuffer buffer = newArrayBuffer(type);
+        ResolvedType itemType = type.item();
+        boolean primitive = type.plan.elementParser != null;
+        for (Node child = e.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element) {
+                Element item = (Element) child;
+                if (primitive)
+                    parseElement(type, buffer, item.getTextContent().trim(), e.getTagName(), item.getTagName());
+                else
+                    buffer.add(readValue(item, itemType));
+            }
+        }
+        return buffer.toArray();
+    }
+
+    private Map readMap(Element e, ResolvedType type) throws Exception {
+        Map c = (Map) newInstance(type.plan);
+        ResolvedType keyType = type.key();
+        ResolvedType valueType = type.value();
+        if (keyType != null && valueType != null) {
+            readMapItems(e, keyType, valueType, (Object k, Object v) -> c.put(k, v));
+        } else {
+            error("%s: unable to determine key or value types", e.getTagName());
+        }
+        return c;
+    }
+
+    /**
+     * If the instance is null, only static fields can be assigned. Otherwise
+     * fields can be static or instance.
+     * @param parentElement
+     * @param type resolved type of instance
+     * @param instance
+     */
+    private void readFields(Element parentElement, ResolvedType type, Object instance) {
+        BindingPlan plan = type.plan;
+        for (Node child = parentElement.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element) {
+                Element e = (Element) child;
+                BindingPlan.Binding binding = plan.get(e.getTagName());
+                if (binding == null) {
+                    error("field named \"%s\" in class %s is absent, inaccessible, or missing setter", e.getTagName(), parentElement.getTagName());
+                    continue;
+                }
+                ResolvedType fieldType = type.field(binding);
+                if (fieldType.plan.isSimple()) {
+                    assignText(plan, instance, binding, fieldType, e.getTextContent().trim(), parentElement.getTagName());
+                    continue;
+                }
+                Object value = readValue(e, fieldType, binding.name);
+                if (value != null) {
+                    assignField(plan, instance, binding, value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses an element to produce a value of a resolved type.
+     * If the type has a valueOf method, use it to parse the text content.
+     * If the type is Collection, read the collection.
+     * If the type is Map, read the map.
+     * Finally, Assume the type is aggregate and read an instance.
+     * @param e
+     * @param type
+     * @param name field name or tag name used in error messages
+     * @return value or null if an error was reported
+     */
+    private Object readValue(Element e, ResolvedType type, String name) {
+        BindingPlan plan = type.plan;
+        if (plan.isSimple())
+            return convert(e, plan, name);
+        try {
+            switch (plan.category) {
+                case Collection:
+                    return readCollection(e, type);
+                case Map:
+                    return readMap(e, type);
+                case Array:
+                    return readArray(e, type);
+                default:
+                    return readAggregate(e, type);
+            }
+        } catch (Exception ex) {
+            error("error <%s>.%s: %s", e.getParentNode().getNodeName(), name, ex.getMessage());
+        }
+        return null;
+    }
+
+    private Object readValue(Element e, ResolvedType type) {
+        return readValue(e, type, e.getTagName());
+    }
+
+    private Object convert(Element e, BindingPlan plan, String name) {
+        return convert(e.getTextContent().trim(), plan, e.getParentNode().getNodeName(), name);
+    }
+
+    private void readMapItems(Element root, ResolvedType keyType, ResolvedType valueType, BiConsumer consumer) {
+        Class<?> keyClass = keyType.plan.wrapper;
+        Class<?> valueClass = valueType.plan.wrapper;
+        MethodHandle keyConverter = keyType.converter;
+        MethodHandle valueConverter = valueType.converter;
+
+        for (Node child = root.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element) {
+                Element e = (Element) child;
+                String tagName = e.getTagName();
+                Object keyValue = null;
+                try {
+
+                    if (keyConverter != null) {
+                        try {
+                            keyValue = (Object) keyConverter.invokeExact(tagName);
+                        } catch (Throwable t) {
+                            throw new Exception(String.format("key %s cannot be converted to %s", tagName, keyClass.getSimpleName()));
+                        }
+                    }
+                    if (keyValue == null) {
+                        throw new Exception(String.format("key %s cannot be converted to %s", tagName, keyClass.getSimpleName()));
+                    }
+                    Object valueValue = null;
+                    if (valueConverter != null) {
+                        try {
+                            valueValue = (Object) valueConverter.invokeExact(e.getTextContent().trim());
+                        } catch (Throwable t) {
+                            throw new InvocationTargetException(t);
+                        }
+                    } else {
+                        valueValue = readValue(e, valueType);
+                    }
+                    if (valueValue != null) {
+                        consumer.accept(keyValue, valueValue);
+                    } else {
+                        throw new Exception(String.format("value %s cannot be converted to %s", e.getTextContent().trim(), valueClass.getSimpleName()));
+                    }
+                } catch (InvocationTargetException ex) {
+                    error("Unable to map %s because %s cannot be converted to %s", tagName, e.getTextContent(), valueClass.getSimpleName());
+                } catch (Exception ex) {
+                    error("Unable to map %s onto %s: %s", tagName, e.getTextContent(), ex.getMessage());
+                }
+            }
+        }
+    }
+
+    private void readCollectionItems(Element root, ResolvedType itemType, Consumer consumer) {
+        for (Node child = root.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element) {
+                Element e = (Element) child;
+                try {
+                    consumer.accept(readValue(e, itemType));
+                } catch (Exception ex) {
+                    error(ex, "Unable to load class for <%s>", e.getTagName());
+                }
+            }
+        }
+    }
+}
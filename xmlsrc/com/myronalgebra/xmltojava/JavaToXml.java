@@ -0,0 +1,410 @@
+package com.myronalgebra.xmltojava;
+
+import com.myronalgebra.logger.Logger;
+import com.myronalgebra.logger.NamedLogger;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.*;
+import java.util.*;
+
+/**
+ * Writes Java objects as XML that XmlToJava reads back: the inverse of XmlToJava.
+ * <p>A writer is obtained from XmlToJava.writer and uses the aliases of that reader.
+ * Aggregates are written field by field: public fields, and properties that have a public
+ * setter and a matching public getter. Simple values are written with toString, enums
+ * with name. Collections and arrays are written as &lt;item> elements, maps as elements
+ * named after their keys. Fields, setters or getters annotated with @Hidden are left out
+ * unless writeHidden is set, as are null values.</p>
+ * <p>Elements are written straight to an XMLStreamWriter as instances are passed in, so
+ * any number of instances can be written in the memory needed by the largest one.</p>
+ * <pre>
+ * try (JavaToXml.Output out = reader.writer().open(stream, "options")) {
+ *     for (Setting setting : settings)
+ *         out.write("setting", setting);
+ * }
+ * </pre>
+ */
+public class JavaToXml {
+    private static final NamedLogger logger = Logger.get(JavaToXml.class);
+    private static final XMLOutputFactory factory = XMLOutputFactory.newInstance();
+    /** tag name of collection and array items */
+    static final String ITEM = "item";
+    private static final int MAX_DEPTH = 100;
+
+    private final Map<String, XmlToJava.Alias<?>> aliasTable;
+    private final Map<Class<?>, String> aliasOfClass = new HashMap<>();
+    private final Map<Class<?>, List<String>> ambiguous = new HashMap<>();
+    private int indent;
+    private boolean writeHidden;
+
+    JavaToXml(XmlToJava reader) {
+        aliasTable = new HashMap<>(reader.aliases());
+        for (Map.Entry<String, XmlToJava.Alias<?>> entry : new TreeMap<>(aliasTable).entrySet()) {
+            Class<?> rawClass = entry.getValue().rawClass;
+            String previous = aliasOfClass.putIfAbsent(rawClass, entry.getKey());
+            if (previous != null)
+                ambiguous.computeIfAbsent(rawClass, c -> new ArrayList<>(Collections.singletonList(previous))).add(entry.getKey());
+        }
+    }
+
+    /**
+     * @param indent spaces per level of nesting; 0, the default, writes no line breaks
+     * @return this
+     */
+    public JavaToXml indent(int indent) {
+        if (indent < 0)
+            throw new IllegalArgumentException("indent must not be negative");
+        this.indent = indent;
+        return this;
+    }
+
+    /**
+     * @param writeHidden true to write members annotated with @Hidden as well
+     * @return this
+     */
+    public JavaToXml writeHidden(boolean writeHidden) {
+        this.writeHidden = writeHidden;
+        return this;
+    }
+
+    /**
+     * Starts a document whose root is not aliased; its children are the instances passed to
+     * the Output. The writer is not closed by the Output.
+     * @param writer
+     * @param rootName name of the document root, e.g. "options"
+     * @return output to write instances to
+     */
+    public Output open(Writer writer, String rootName) throws XMLStreamException {
+        XMLStreamWriter xml = factory.createXMLStreamWriter(writer);
+        xml.writeStartDocument("1.0");
+        return new Output(xml, null, rootName);
+    }
+
+    /**
+     * Starts a UTF-8 document whose root is not aliased. The stream is not closed by the Output.
+     * @param stream
+     * @param rootName name of the document root
+     * @return output to write instances to
+     */
+    public Output open(OutputStream stream, String rootName) throws XMLStreamException {
+        XMLStreamWriter xml = factory.createXMLStreamWriter(stream, "UTF-8");
+        xml.writeStartDocument("UTF-8", "1.0");
+        return new Output(xml, null, rootName);
+    }
+
+    /**
+     * Starts a UTF-8 file whose root is not aliased. The file is closed with the Output.
+     * @param file
+     * @param rootName name of the document root
+     * @return output to write instances to
+     */
+    public Output open(File file, String rootName) throws IOException, XMLStreamException {
+        OutputStream stream = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            XMLStreamWriter xml = factory.createXMLStreamWriter(stream, "UTF-8");
+            xml.writeStartDocument("UTF-8", "1.0");
+            return new Output(xml, stream, rootName);
+        } catch (XMLStreamException | RuntimeException e) {
+            stream.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Starts a document whose root is not aliased on a writer that has been configured by
+     * the caller; the start of the document has to be written already.
+     * @param xml
+     * @param rootName name of the document root
+     * @return output to write instances to
+     */
+    public Output open(XMLStreamWriter xml, String rootName) throws XMLStreamException {
+        return new Output(xml, null, rootName);
+    }
+
+    /**
+     * Writes a document whose root is one aliased instance.
+     * @param writer not closed
+     * @param alias
+     * @param instance
+     */
+    public void write(Writer writer, String alias, Object instance) throws XMLStreamException {
+        XMLStreamWriter xml = factory.createXMLStreamWriter(writer);
+        xml.writeStartDocument("1.0");
+        Output output = new Output(xml, null, null);
+        output.write(alias, instance);
+        output.close();
+    }
+
+    /**
+     * @param type class of an instance
+     * @return the alias of the class or its nearest superclass that has one
+     * @throws IllegalArgumentException if there is none or the class has several
+     */
+    String aliasOf(Class<?> type) {
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            List<String> names = ambiguous.get(c);
+            if (names != null)
+                throw new IllegalArgumentException(String.format("class %s has aliases %s; name one", c.getSimpleName(), names));
+            String alias = aliasOfClass.get(c);
+            if (alias != null)
+                return alias;
+        }
+        throw new IllegalArgumentException(String.format("class %s has no alias", type.getSimpleName()));
+    }
+
+    private static boolean isElementName(String name) {
+        if (name.isEmpty() || !(Character.isLetter(name.charAt(0)) || name.charAt(0) == '_'))
+            return false;
+        for (int i = 1; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!(Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.' || c == ':'))
+                return false;
+        }
+        return true;
+    }
+
+    private static String text(Object value) {
+        return value instanceof Enum ? ((Enum<?>) value).name() : value.toString();
+    }
+
+    /**
+     * A document being written. Not thread safe; instances are written in the order of the
+     * calls, and the document is complete when the Output is closed.
+     */
+    public final class Output implements AutoCloseable {
+        private final XMLStreamWriter xml;
+        private final Closeable owned;
+        private final boolean hasRoot;
+        private char[] indentation = new char[0];
+        private int depth;
+        private boolean nested;
+        private boolean closed;
+
+        private Output(XMLStreamWriter xml, Closeable owned, String rootName) throws XMLStreamException {
+            this.xml = xml;
+            this.owned = owned;
+            this.hasRoot = rootName != null;
+            if (hasRoot)
+                start(rootName);
+        }
+
+        /**
+         * Writes an instance under the alias of its class.
+         * @param instance nothing is written if null
+         * @return this
+         * @throws IllegalArgumentException if the class has no alias or more than one
+         */
+        public Output write(Object instance) throws XMLStreamException {
+            if (instance == null)
+                return this;
+            return write(aliasOf(instance.getClass()), instance);
+        }
+
+        /**
+         * Writes an instance as an aliased element.
+         * @param alias
+         * @param instance nothing is written if null
+         * @return this
+         * @throws IllegalArgumentException if there is no such alias
+         */
+        public Output write(String alias, Object instance) throws XMLStreamException {
+            writeValue(alias, type(alias), instance);
+            return this;
+        }
+
+        /**
+         * Writes the static fields and properties of an aliased class, e.g. one that has no consumer.
+         * @param alias
+         * @return this
+         */
+        public Output writeStatic(String alias) throws XMLStreamException {
+            ResolvedType type = type(alias);
+            start(alias);
+            writeProperties(type, null, true);
+            end();
+            return this;
+        }
+
+        public void flush() throws XMLStreamException {
+            xml.flush();
+        }
+
+        /**
+         * Ends the document and flushes it. Closes the file if the Output was opened on one.
+         */
+        @Override
+        public void close() throws XMLStreamException {
+            if (closed)
+                return;
+            closed = true;
+            try {
+                if (hasRoot)
+                    end();
+                if (indent > 0)
+                    xml.writeCharacters("\n");
+                xml.writeEndDocument();
+                xml.flush();
+                xml.close();
+            } finally {
+                if (owned != null) {
+                    try {
+                        owned.close();
+                    } catch (IOException e) {
+                        throw new XMLStreamException(e);
+                    }
+                }
+            }
+        }
+
+        private ResolvedType type(String alias) {
+            XmlToJava.Alias<?> a = aliasTable.get(alias);
+            if (a == null)
+                throw new IllegalArgumentException(String.format("no alias %s", alias));
+            return a.type;
+        }
+
+        private void start(String name) throws XMLStreamException {
+            if (depth >= MAX_DEPTH)
+                throw new XMLStreamException(String.format("<%s> is nested %d levels deep; does an instance refer to itself?", name, depth));
+            newLine();
+            xml.writeStartElement(name);
+            depth++;
+            nested = false;
+        }
+
+        private void end() throws XMLStreamException {
+            depth--;
+            if (nested)
+                newLine();
+            xml.writeEndElement();
+            nested = true;
+        }
+
+        private void newLine() throws XMLStreamException {
+            if (indent == 0)
+                return;
+            int length = 1 + depth * indent;
+            if (indentation.length < length) {
+                indentation = new char[length * 2];
+                Arrays.fill(indentation, ' ');
+                indentation[0] = '\n';
+            }
+            xml.writeCharacters(indentation, 0, length);
+        }
+
+        private void writeSimple(String name, String text) throws XMLStreamException {
+            start(name);
+            xml.writeCharacters(text);
+            end();
+        }
+
+        /**
+         * Writes a value as an element of its declared type, or of its own class if the
+         * declared type is Object or an interface that is not a collection or map.
+         */
+        private void writeValue(String name, ResolvedType type, Object value) throws XMLStreamException {
+            if (value == null)
+                return;
+            if (type.plan.category == BindingPlan.Category.Aggregate && (type.raw == Object.class || type.raw.isInterface()))
+                type = ResolvedType.of(value.getClass());
+            switch (type.plan.category) {
+                case Simple:
+                    writeSimple(name, text(value));
+                    break;
+                case Collection:
+                    start(name);
+                    ResolvedType item = elementType(type.item());
+                    for (Object o : (Collection<?>) value)
+                        writeValue(ITEM, item, o);
+                    end();
+                    break;
+                case Map:
+                    start(name);
+                    writeEntries(name, elementType(type.value()), (Map<?, ?>) value);
+                    end();
+                    break;
+                case Array:
+                    start(name);
+                    writeArray(elementType(type.item()), value);
+                    end();
+                    break;
+                default:
+                    start(name);
+                    writeProperties(type, value, false);
+                    end();
+            }
+        }
+
+        private ResolvedType elementType(ResolvedType type) {
+            return type != null ? type : ResolvedType.of(Object.class);
+        }
+
+        private void writeProperties(ResolvedType type, Object instance, boolean statics) throws XMLStreamException {
+            for (BindingPlan.Binding binding : type.plan.properties) {
+                if (binding.isStatic != statics || binding.hidden && !writeHidden)
+                    continue;
+                Object value;
+                try {
+                    value = (Object) binding.getter.invokeExact(instance);
+                } catch (Throwable t) {
+                    logger.error("cannot read %s of class %s: %s", binding.elementName, type.plan.type.getSimpleName(), t.toString());
+                    continue;
+                }
+                if (value == instance && value != null) {
+                    logger.warn("%s of class %s refers to its own instance and is not written", binding.elementName, type.plan.type.getSimpleName());
+                    continue;
+                }
+                writeValue(binding.elementName, type.field(binding), value);
+            }
+        }
+
+        private void writeEntries(String name, ResolvedType valueType, Map<?, ?> map) throws XMLStreamException {
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (entry.getKey() == null)
+                    continue;
+                String key = text(entry.getKey());
+                if (!isElementName(key)) {
+                    logger.error("key '%s' of map %s is not an element name and is not written", key, name);
+                    continue;
+                }
+                writeValue(key, valueType, entry.getValue());
+            }
+        }
+
+        /**
+         * Writes the elements of primitive arrays without boxing them.
+         */
+        private void writeArray(ResolvedType itemType, Object array) throws XMLStreamException {
+            if (array instanceof int[]) {
+                for (int v : (int[]) array)
+                    writeSimple(ITEM, Integer.toString(v));
+            } else if (array instanceof long[]) {
+                for (long v : (long[]) array)
+                    writeSimple(ITEM, Long.toString(v));
+            } else if (array instanceof double[]) {
+                for (double v : (double[]) array)
+                    writeSimple(ITEM, Double.toString(v));
+            } else if (array instanceof float[]) {
+                for (float v : (float[]) array)
+                    writeSimple(ITEM, Float.toString(v));
+            } else if (array instanceof boolean[]) {
+                for (boolean v : (boolean[]) array)
+                    writeSimple(ITEM, Boolean.toString(v));
+            } else if (array instanceof short[]) {
+                for (short v : (short[]) array)
+                    writeSimple(ITEM, Short.toString(v));
+            } else if (array instanceof byte[]) {
+                for (byte v : (byte[]) array)
+                    writeSimple(ITEM, Byte.toString(v));
+            } else if (array instanceof char[]) {
+                for (char v : (char[]) array)
+                    writeSimple(ITEM, String.valueOf(v));
+            } else {
+                for (Object v : (Object[]) array)
+                    writeValue(ITEM, itemType, v);
+            }
+        }
+    }
+}
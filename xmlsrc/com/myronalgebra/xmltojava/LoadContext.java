@@ -0,0 +1,56 @@
+package com.myronalgebra.xmltojava;
+
+import com.myronalgebra.logger.Logger;
+import com.myronalgebra.logger.NamedLogger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The state of one call to load or stream. A context is created for every load so that
+ * a single XmlToJava can serve concurrent loads; errors of one load never show up in another.
+ * <p>A context may be shared by the threads of a parallel load and is thread safe.</p>
+ */
+public class LoadContext {
+    private static final NamedLogger logger = Logger.get(LoadContext.class);
+    private volatile boolean error;
+    private final List<String> diagnostics = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * @return true if any error was reported during the load
+     */
+    public boolean isError() {
+        return error;
+    }
+
+    /**
+     * @return the error messages of the load in the order they were reported
+     */
+    public List<String> getDiagnostics() {
+        synchronized (diagnostics) {
+            return new ArrayList<>(diagnostics);
+        }
+    }
+
+    /**
+     * @return the number of errors reported so far
+     */
+    int getErrorCount() {
+        return diagnostics.size();
+    }
+
+    void error(String format, String... params) {
+        String message = String.format(format, (Object[]) params);
+        diagnostics.add(message);
+        logger.error("%s", message);
+        error = true;
+    }
+
+    void error(Exception ex, String format, String... params) {
+        String message = String.format(format, (Object[]) params);
+        diagnostics.add(ex.getClass().getSimpleName() + " " + ex.getMessage() + " " + message);
+        logger.error(ex, "%s", message);
+        error = true;
+    }
+}
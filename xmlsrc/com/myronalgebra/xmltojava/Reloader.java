@@ -0,0 +1,212 @@
+package com.myronalgebra.xmltojava;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reloads one document, re-binding only what changed since the previous reload.
+ * <p>A reloader remembers a content hash of every top-level element: the children of a
+ * virtual root, or the root itself if it is aliased. An element is identified by its tag
+ * name and its position among siblings with the same name. On reload the document is
+ * parsed again, but only elements that are new or whose hash changed are bound and
+ * passed to their consumers; unchanged elements allocate no instances.</p>
+ * <p>The first reload binds every element, like load. An element whose binding reports
+ * an error keeps its old hash, so the next reload tries it again even if it is unchanged.
+ * A reloader is obtained from
+ * XmlToJava.reloader(); reloads of one reloader are serialized.</p>
+ */
+public class Reloader {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final XmlToJava owner;
+    private Map<String, Long> hashes = new LinkedHashMap<>();
+    private int changeCount;
+
+    /**
+     * An instance bound by a deferred reload that has not been passed to its consumer.
+     */
+    static final class Update {
+        /** identifies the element within its document, e.g. setting[2] */
+        final String key;
+        final String tag;
+        final XmlToJava.Alias alias;
+        final Object object;
+
+        Update(String key, String tag, XmlToJava.Alias alias, Object object) {
+            this.key = key;
+            this.tag = tag;
+            this.alias = alias;
+            this.object = object;
+        }
+    }
+
+    Reloader(XmlToJava owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * @param file
+     * @return the errors of this reload
+     */
+    public synchronized LoadContext reload(File file) {
+        LoadContext context = new LoadContext();
+        changeCount = 0;
+        Document doc = owner.readDocument(file, context);
+        if (doc != null)
+            rebind(doc.getDocumentElement(), context, null);
+        return owner.finish(context);
+    }
+
+    /**
+     * Unconditionally closes the stream.
+     * @param inputStream
+     * @return the errors of this reload
+     */
+    public synchronized LoadContext reload(InputStream inputStream) {
+        LoadContext context = new LoadContext();
+        changeCount = 0;
+        Document doc = owner.readDocument(inputStream, context);
+        if (doc != null)
+            rebind(doc.getDocumentElement(), context, null);
+        return owner.finish(context);
+    }
+
+    /**
+     * Binds the changed elements of a file without passing them to their consumers.
+     * The hashes are kept only if the reload has no errors, so a failed reload leaves the
+     * reloader as it was and the next reload binds the same changes again.
+     * @param file
+     * @param updates receives the changed instances in document order
+     * @return the errors of this reload
+     */
+    synchronized LoadContext reload(File file, List<Update> updates) {
+        LoadContext context = new LoadContext();
+        changeCount = 0;
+        Document doc = owner.readDocument(file, context);
+        if (doc != null) {
+            Map<String, Long> previous = hashes;
+            rebind(doc.getDocumentElement(), context, updates);
+            if (context.isError()) {
+                hashes = previous;
+                updates.clear();
+            }
+        }
+        return owner.finish(context);
+    }
+
+    /**
+     * @return the keys of the top-level elements of the last successful reload in document order
+     */
+    synchronized List<String> keys() {
+        return new ArrayList<>(hashes.keySet());
+    }
+
+    /**
+     * @return the number of top-level elements bound by the last reload; 0 if it could not be parsed
+     */
+    public synchronized int getChangeCount() {
+        return changeCount;
+    }
+
+    /**
+     * Forgets all hashes so that the next reload binds every element.
+     */
+    public synchronized void reset() {
+        hashes = new LinkedHashMap<>();
+    }
+
+    /**
+     * @param updates receives changed instances; null to pass them to their consumers immediately
+     */
+    private void rebind(Element root, LoadContext context, List<Update> updates) {
+        DomReader reader = new DomReader(owner, context);
+        Map<String, Long> next = new LinkedHashMap<>();
+        if (owner.hasAlias(root.getTagName())) {
+            rebind(reader, context, root, "/" + root.getTagName(), next, updates);
+        } else {
+            Map<String, Integer> occurrences = new HashMap<>();
+            for (Node child = root.getFirstChild(); child != null; child = child.getNextSibling()) {
+                if (child instanceof Element) {
+                    Element e = (Element) child;
+                    int n = occurrences.merge(e.getTagName(), 1, Integer::sum);
+                    rebind(reader, context, e, e.getTagName() + "[" + n + "]", next, updates);
+                }
+            }
+        }
+        hashes = next;
+    }
+
+    private void rebind(DomReader reader, LoadContext context, Element e, String key, Map<String, Long> next, List<Update> updates) {
+        long hash = hash(e, FNV_OFFSET);
+        next.put(key, hash);
+        Long previous = hashes.get(key);
+        if (previous == null || previous != hash) {
+            int errors = context.getErrorCount();
+            if (updates == null) {
+                reader.readTopLevel(e);
+            } else {
+                Object object = reader.bindTopLevel(e);
+                if (object != null)
+                    updates.add(new Update(key, e.getTagName(), owner.aliasFor(e.getTagName()), object));
+            }
+            if (context.getErrorCount() > errors) {
+                if (previous == null)
+                    next.remove(key);
+                else
+                    next.put(key, previous);
+            }
+            changeCount++;
+        }
+    }
+
+    /**
+     * FNV-1a over the names, attributes and text of a subtree.
+     */
+    private static long hash(Node node, long h) {
+        h = hash(h, node.getNodeType());
+        switch (node.getNodeType()) {
+            case Node.ELEMENT_NODE:
+                h = hash(h, node.getNodeName());
+                NamedNodeMap attributes = node.getAttributes();
+                for (int i = 0; i < attributes.getLength(); i++) {
+                    Attr attr = (Attr) attributes.item(i);
+                    h = hash(h, attr.getName());
+                    h = hash(h, attr.getValue());
+                }
+                for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling())
+                    h = hash(child, h);
+                // close the element so that <a><b/></a> and <a/><b/> differ
+                h = hash(h, -1);
+                break;
+            case Node.TEXT_NODE:
+            case Node.CDATA_SECTION_NODE:
+                h = hash(h, node.getNodeValue());
+                break;
+            default:
+                break;
+        }
+        return h;
+    }
+
+    private static long hash(long h, String s) {
+        for (int i = 0; i < s.length(); i++)
+            h = hash(h, s.charAt(i));
+        return hash(h, 0);
+    }
+
+    private static long hash(long h, int value) {
+        return (h ^ value) * FNV_PRIME;
+    }
+}
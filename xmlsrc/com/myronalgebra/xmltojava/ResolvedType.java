@@ -0,0 +1,209 @@
+package com.myronalgebra.xmltojava;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.*;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A generic type with its type arguments resolved to other ResolvedTypes.
+ * <p>A node is built once per alias and once per field, so binding never inspects
+ * java.lang.reflect.Type again. Type variables are replaced by the arguments of the type
+ * that declares them, wildcards by their bound, and the item type of a collection or the
+ * key and value types of a map are found by walking the supertypes of the raw class,
+ * so that e.g. a class extending ArrayList&lt;Integer&gt; is a collection of Integer.</p>
+ * <p>Nodes of raw classes are cached per class; their fields are shared by every
+ * element of that class.</p>
+ */
+final class ResolvedType {
+    private static final ResolvedType[] NO_ARGUMENTS = new ResolvedType[0];
+
+    private static final ClassValue<ResolvedType> raws = new ClassValue<ResolvedType>() {
+        @Override
+        protected ResolvedType computeValue(Class<?> type) {
+            return new ResolvedType(type, NO_ARGUMENTS);
+        }
+    };
+
+    final Class<?> raw;
+    final BindingPlan plan;
+    /** valueOf of a simple type, (String)Object; null otherwise */
+    final MethodHandle converter;
+    /** no-argument constructor, ()Object; null if there is none */
+    final MethodHandle factory;
+    private final ResolvedType[] arguments;
+    private final Map<TypeVariable<?>, ResolvedType> variables;
+    private final Map<BindingPlan.Binding, ResolvedType> fields = new ConcurrentHashMap<>();
+    private ResolvedType item;
+    private ResolvedType key;
+    private ResolvedType value;
+    private boolean elementsResolved;
+
+    private ResolvedType(Class<?> raw, ResolvedType[] arguments) {
+        this.raw = raw;
+        this.plan = BindingPlan.of(raw);
+        this.converter = plan.parser;
+        this.factory = plan.factory;
+        this.arguments = arguments;
+        TypeVariable<?>[] parameters = raw.getTypeParameters();
+        if (arguments.length == 0) {
+            variables = Collections.emptyMap();
+        } else {
+            variables = new HashMap<>();
+            for (int i = 0; i < parameters.length; i++)
+                variables.put(parameters[i], arguments[i]);
+        }
+    }
+
+    /**
+     * @param type a class
+     * @return the cached node of a raw class
+     */
+    static ResolvedType of(Class<?> type) {
+        return raws.get(type);
+    }
+
+    /**
+     * @param raw a generic class
+     * @param arguments one class per type parameter of raw
+     * @return node of raw parameterized by arguments
+     * @throws IllegalArgumentException if the number of arguments does not match the type parameters of raw
+     */
+    static ResolvedType of(Class<?> raw, Type... arguments) {
+        if (arguments.length == 0)
+            return of(raw);
+        if (arguments.length != raw.getTypeParameters().length)
+            throw new IllegalArgumentException(String.format("%s has %d type parameters", raw.getSimpleName(), raw.getTypeParameters().length));
+        ResolvedType[] resolved = new ResolvedType[arguments.length];
+        for (int i = 0; i < arguments.length; i++)
+            resolved[i] = resolve(arguments[i], Collections.emptyMap());
+        return new ResolvedType(raw, resolved);
+    }
+
+    /**
+     * Resolves a type in the scope of the type variables of a declaring type.
+     * @return node or null if the type contains a type variable that is not bound
+     */
+    private static ResolvedType resolve(Type type, Map<TypeVariable<?>, ResolvedType> variables) {
+        if (type instanceof Class)
+            return of((Class<?>) type);
+        if (type instanceof ParameterizedType) {
+            ParameterizedType pType = (ParameterizedType) type;
+            Type[] typeArguments = pType.getActualTypeArguments();
+            ResolvedType[] resolved = new ResolvedType[typeArguments.length];
+            for (int i = 0; i < typeArguments.length; i++) {
+                resolved[i] = resolve(typeArguments[i], variables);
+                if (resolved[i] == null)
+                    return null;
+            }
+            return new ResolvedType((Class<?>) pType.getRawType(), resolved);
+        }
+        if (type instanceof TypeVariable)
+            return variables.get(type);
+        if (type instanceof WildcardType) {
+            WildcardType wildcard = (WildcardType) type;
+            Type[] lower = wildcard.getLowerBounds();
+            return resolve(lower.length > 0 ? lower[0] : wildcard.getUpperBounds()[0], variables);
+        }
+        if (type instanceof GenericArrayType) {
+            ResolvedType component = resolve(((GenericArrayType) type).getGenericComponentType(), variables);
+            return component == null ? null : of(Array.newInstance(component.raw, 0).getClass());
+        }
+        return null;
+    }
+
+    /**
+     * @param binding a binding of this type's plan
+     * @return the type of the bound field or setter parameter; the erased class if it
+     * refers to a type variable that this type does not bind
+     */
+    ResolvedType field(BindingPlan.Binding binding) {
+        ResolvedType result = fields.get(binding);
+        if (result == null) {
+            result = resolve(binding.genericType, variables);
+            if (result == null)
+                result = of(binding.valueClass);
+            fields.put(binding, result);
+        }
+        return result;
+    }
+
+    /**
+     * @return item type of a collection or component type of an array; null if it cannot be determined
+     */
+    ResolvedType item() {
+        resolveElements();
+        return item;
+    }
+
+    /**
+     * @return key type of a map or null if it cannot be determined
+     */
+    ResolvedType key() {
+        resolveElements();
+        return key;
+    }
+
+    /**
+     * @return value type of a map or null if it cannot be determined
+     */
+    ResolvedType value() {
+        resolveElements();
+        return value;
+    }
+
+    private synchronized void resolveElements() {
+        if (elementsResolved)
+            return;
+        if (Collection.class.isAssignableFrom(raw)) {
+            item = supertypeArgument(Collection.class, 0);
+        } else if (Map.class.isAssignableFrom(raw)) {
+            key = supertypeArgument(Map.class, 0);
+            value = supertypeArgument(Map.class, 1);
+        } else if (raw.isArray()) {
+            item = of(raw.getComponentType());
+        }
+        elementsResolved = true;
+    }
+
+    /**
+     * Finds the argument of a generic supertype as seen from this type.
+     * @param target a generic superclass or interface of raw
+     * @param index index of the type parameter of target
+     * @return node or null if the argument is not bound
+     */
+    private ResolvedType supertypeArgument(Class<?> target, int index) {
+        if (raw == target)
+            return index < arguments.length ? arguments[index] : null;
+        Type superclass = raw.getGenericSuperclass();
+        if (superclass != null && target.isAssignableFrom(raw.getSuperclass()))
+            return supertype(superclass, target, index);
+        for (Type type : raw.getGenericInterfaces()) {
+            Class<?> rawInterface = type instanceof ParameterizedType ? (Class<?>) ((ParameterizedType) type).getRawType() : (Class<?>) type;
+            if (target.isAssignableFrom(rawInterface))
+                return supertype(type, target, index);
+        }
+        return null;
+    }
+
+    private ResolvedType supertype(Type type, Class<?> target, int index) {
+        ResolvedType resolved = resolve(type, variables);
+        return resolved == null ? null : resolved.supertypeArgument(target, index);
+    }
+
+    @Override
+    public String toString() {
+        if (arguments.length == 0)
+            return raw.getTypeName();
+        StringBuilder sb = new StringBuilder(raw.getTypeName()).append('<');
+        for (int i = 0; i < arguments.length; i++) {
+            if (i > 0)
+                sb.append(", ");
+            sb.append(arguments[i]);
+        }
+        return sb.append('>').toString();
+    }
+}
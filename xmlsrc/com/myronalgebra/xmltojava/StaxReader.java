@@ -0,0 +1,327 @@
+package com.myronalgebra.xmltojava;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.invoke.MethodHandle;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Reads XML event by event with the same alias, aggregate, collection and map semantics
+ * as the DOM based methods of XmlToJava. No Document is built; an anonymous instance is
+ * passed to its consumer when the end tag of its element is read.
+ * <p>Every read method is entered positioned on the START_ELEMENT of the element it reads
+ * and returns positioned on the matching END_ELEMENT.</p>
+ */
+class StaxReader extends BindingReader {
+    private static final XMLInputFactory factory = createFactory();
+
+    private XMLStreamReader in;
+    private int depth;
+
+    StaxReader(XmlToJava owner, LoadContext context) {
+        super(owner, context);
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory f = XMLInputFactory.newInstance();
+        f.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return f;
+    }
+
+    void read(InputStream stream) throws XMLStreamException {
+        read(factory.createXMLStreamReader(stream));
+    }
+
+    void read(Reader reader) throws XMLStreamException {
+        read(factory.createXMLStreamReader(reader));
+    }
+
+    private void read(XMLStreamReader reader) throws XMLStreamException {
+        in = reader;
+        depth = 0;
+        try {
+            while (next() != XMLStreamConstants.START_ELEMENT) {
+                if (in.getEventType() == XMLStreamConstants.END_DOCUMENT)
+                    return;
+            }
+            readDocRoot();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Advances to the next event and tracks element depth.
+     * @return event type
+     */
+    private int next() throws XMLStreamException {
+        int event = in.next();
+        if (event == XMLStreamConstants.START_ELEMENT)
+            depth++;
+        else if (event == XMLStreamConstants.END_ELEMENT)
+            depth--;
+        return event;
+    }
+
+    /**
+     * Advances to the next child of the element at the given depth.
+     * @param parentDepth depth of the parent element
+     * @return true if positioned on a child START_ELEMENT, false if positioned on the parent's END_ELEMENT
+     */
+    private boolean nextChild(int parentDepth) throws XMLStreamException {
+        while (true) {
+            int event = next();
+            if (event == XMLStreamConstants.START_ELEMENT)
+                return true;
+            if (event == XMLStreamConstants.END_ELEMENT && depth < parentDepth)
+                return false;
+            if (event == XMLStreamConstants.END_DOCUMENT)
+                throw new XMLStreamException("unexpected end of document");
+        }
+    }
+
+    /**
+     * Skips the remainder of the element at the given depth including its end tag.
+     */
+    private void skipTo(int elementDepth) throws XMLStreamException {
+        while (depth >= elementDepth) {
+            if (next() == XMLStreamConstants.END_DOCUMENT)
+                throw new XMLStreamException("unexpected end of document");
+        }
+    }
+
+    private String tagName() {
+        String prefix = in.getPrefix();
+        if (prefix == null || prefix.isEmpty())
+            return in.getLocalName();
+        return prefix + ":" + in.getLocalName();
+    }
+
+    /**
+     * Collects the text of the current element and its descendants as getTextContent would.
+     */
+    private String readText() throws XMLStreamException {
+        int elementDepth = depth;
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            int event = next();
+            switch (event) {
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    sb.append(in.getTextCharacters(), in.getTextStart(), in.getTextLength());
+                    break;
+                case XMLStreamConstants.ENTITY_REFERENCE:
+                    sb.append(in.getText());
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (depth < elementDepth)
+                        return sb.toString().trim();
+                    break;
+                case XMLStreamConstants.END_DOCUMENT:
+                    throw new XMLStreamException("unexpected end of document");
+            }
+        }
+    }
+
+    private void readDocRoot() throws XMLStreamException {
+        String rootTag = tagName();
+        try {
+            XmlToJava.Alias alias = loadAlias(rootTag);
+            readAnonymous(alias, rootTag);
+            return;
+        } catch (ClassNotFoundException e) {
+            // continue
+        } catch (Exception e) {
+            error(e, "Unable to load <%s>", rootTag);
+            return;
+        }
+        while (nextChild(1)) {
+            String tag = tagName();
+            int elementDepth = depth;
+            try {
+                XmlToJava.Alias alias = loadAlias(tag);
+                readAnonymous(alias, tag);
+            } catch (XMLStreamException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                error(ex, "Unable to load <%s>", tag);
+                skipTo(elementDepth);
+            }
+        }
+    }
+
+    private void readAnonymous(XmlToJava.Alias alias, String tag) throws Exception {
+        Object object;
+        ResolvedType type = alias.type;
+        BindingPlan plan = type.plan;
+        if (plan.category == BindingPlan.Category.Collection) {
+            object = readCollection(type, tag);
+        } else if (plan.category == BindingPlan.Category.Map) {
+            object = readMap(type, tag);
+        } else if (plan.isSimple()) {
+            object = convert(readText(), plan, tag, tag);
+        } else if (plan.category == BindingPlan.Category.Array) {
+            object = readValue(type, tag, tag);
+        } else {
+            object = readAggregate(type, tag);
+        }
+        deliver(alias, object);
+    }
+
+    private Object readAggregate(ResolvedType type, String tag) throws Exception {
+        Object a = newInstance(type.plan);
+        readFields(type, a, tag);
+        return a;
+    }
+
+    private void readFields(ResolvedType type, Object instance, String parentTag) throws XMLStreamException {
+        BindingPlan plan = type.plan;
+        int parentDepth = depth;
+        while (nextChild(parentDepth)) {
+            String tag = tagName();
+            BindingPlan.Binding binding = plan.get(tag);
+            if (binding == null) {
+                error("field named \"%s\" in class %s is absent, inaccessible, or missing setter", tag, parentTag);
+                skipTo(depth);
+                continue;
+            }
+            ResolvedType fieldType = type.field(binding);
+            if (fieldType.plan.isSimple()) {
+                assignText(plan, instance, binding, fieldType, readText(), parentTag);
+                continue;
+            }
+            Object value = readValue(fieldType, parentTag, binding.name);
+            if (value != null)
+                assignField(plan, instance, binding, value);
+        }
+    }
+
+    /**
+     * Reads the current element as a value of a resolved type.
+     * @param parentTag used in error messages
+     * @param name used in error messages
+     * @return value or null if an error was reported
+     */
+    private Object readValue(ResolvedType type, String parentTag, String name) throws XMLStreamException {
+        BindingPlan plan = type.plan;
+        if (plan.isSimple())
+            return convert(readText(), plan, parentTag, name);
+        int elementDepth = depth;
+        try {
+            switch (plan.category) {
+                case Collection:
+                    return readCollection(type, name);
+                case Map:
+                    return readMap(type, name);
+                case Array:
+                    return readArray(type, name);
+                default:
+                    return readAggregate(type, name);
+            }
+        } catch (XMLStreamException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            error("error <%s>.%s: %s", parentTag, name, ex.getMessage());
+            skipTo(elementDepth);
+        }
+        return null;
+    }
+
+    private Object readCollection(ResolvedType type, String tag) throws Exception {
+        BindingPlan plan = type.plan;
+        if (plan.constructor == null)
+            throw new Exception(String.format("cannot create instance of %s", plan.wrapper.getSimpleName()));
+        Collection c = (Collection) newInstance(plan);
+        ResolvedType itemType = type.item();
+        if (itemType != null) {
+            readCollectionItems(itemType, tag, (Object x) -> c.add(x));
+        } else {
+            error("%s: unable to determing item type", tag);
+            skipTo(depth);
+        }
+        return c;
+    }
+
+    private void readCollectionItems(ResolvedType itemType, String parentTag, Consumer consumer) throws XMLStreamException {
+        int parentDepth = depth;
+        while (nextChild(parentDepth)) {
+            String tag = tagName();
+            int elementDepth = depth;
+            try {
+                consumer.accept(readValue(itemType, parentTag, tag));
+            } catch (XMLStreamException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                error(ex, "Unable to load class for <%s>", tag);
+                skipTo(elementDepth);
+            }
+        }
+    }
+
+    private Object readArray(ResolvedType type, String tag) throws Exception {
+        ArrayBuffer buffer = newArrayBuffer(type);
+        ResolvedType itemType = type.item();
+        boolean primitive = type.plan.elementParser != null;
+        int parentDepth = depth;
+        while (nextChild(parentDepth)) {
+            String itemTag = tagName();
+            if (primitive)
+                parseElement(type, buffer, readText(), tag, itemTag);
+            else
+                buffer.add(readValue(itemType, tag, itemTag));
+        }
+        return buffer.toArray();
+    }
+
+    private Map readMap(ResolvedType type, String tag) throws Exception {
+        Map c = (Map) newInstance(type.plan);
+        ResolvedType keyType = type.key();
+        ResolvedType valueType = type.value();
+        if (keyType != null && valueType != null) {
+            readMapItems(keyType, valueType, tag, (Object k, Object v) -> c.put(k, v));
+        } else {
+            error("%s: unable to determine key or value types", tag);
+            skipTo(depth);
+        }
+        return c;
+    }
+
+    private void readMapItems(ResolvedType keyType, ResolvedType valueType, String parentTag, BiConsumer consumer) throws XMLStreamException {
+        MethodHandle keyConverter = keyType.converter;
+        int parentDepth = depth;
+        while (nextChild(parentDepth)) {
+            String tagName = tagName();
+            int elementDepth = depth;
+            try {
+                Object keyValue = null;
+                if (keyConverter != null) {
+                    try {
+                        keyValue = (Object) keyConverter.invokeExact(tagName);
+                    } catch (Throwable t) {
+                        keyValue = null;
+                    }
+                }
+                if (keyValue == null)
+                    throw new Exception(String.format("key %s cannot be converted to %s", tagName, keyType.plan.wrapper.getSimpleName()));
+                Object valueValue = readValue(valueType, parentTag, tagName);
+                if (valueValue != null)
+                    consumer.accept(keyValue, valueValue);
+                else
+                    error("Unable to map %s onto %s", tagName, valueType.toString());
+            } catch (XMLStreamException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                error("Unable to map %s: %s", tagName, ex.getMessage());
+                skipTo(elementDepth);
+            }
+        }
+    }
+}
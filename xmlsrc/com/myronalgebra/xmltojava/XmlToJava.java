@@ -2,16 +2,21 @@ package com.myronalgebra.xmltojava;
 
 import com.myronalgebra.common.*;
 import com.myronalgebra.logger.Logger;
+import com.myronalgebra.logger.NamedLogger;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
-import sun.reflect.generics.reflectiveObjects.ParameterizedTypeImpl;
 
-import java.io.File;
-import java.io.InputStream;
-import java.io.Reader;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
+import java.io.*;
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.*;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
@@ -27,9 +32,17 @@ import java.util.function.Consumer;
  * <p> Public fields may have a setter in which case the setter is always used instead of direct assignment.</p></p>
  */
 public class XmlToJava {
+    private static final NamedLogger logger = Logger.get(XmlToJava.class);
     private boolean echoOptions = true;
-    private boolean error;
+    private volatile boolean error;
+    int parallelism = 1;
+    boolean orderedDelivery = true;
+    private final boolean frozen;
 
+    /**
+     * Loads on a shared reader should use the LoadContext returned by load instead.
+     * @return true if any load by this reader has reported an error
+     */
     public boolean isError() {
         return error;
     }
@@ -38,67 +51,30 @@ public class XmlToJava {
         this.error = error;
     }
 
-    private static class StringConverter {
-        public static String valueOf(String string) {
-            return string;
-        }
-    }
-
-    private class OptionType implements ParameterizedType {
-
-        private final Class<?> rawType;
-
-        public OptionType(Class<?> rawType, OptionType...paramTypes) {
-            this.rawType = rawType;
-        }
-        @Override
-        public Type[] getActualTypeArguments() {
-            return new Type[0];
-        }
-
-        @Override
-        public Type getRawType() {
-            return null;
-        }
-
-        @Override
-        public Type getOwnerType() {
-            return null;
-        }
-
-    }
-
-    private static class Alias<T> {
+    static class Alias<T> {
         Consumer<T> consumer;
         Class<?> rawClass;
-        Type type;
+        ResolvedType type;
 
         public Alias(Consumer<T> consumer, Class<?> rawClass, Class<?>... parameters) {
             this.consumer = consumer;
             this.rawClass = rawClass;
-            Type [] types = new Type[parameters.length];
-            for (int i = 0; i < parameters.length; i++)
-                types[i] = parameters[i];
             try {
-                this.type = ParameterizedTypeImpl.make(rawClass, types, null);
-            } catch (MalformedParameterizedTypeException e) {
-                Logger.error("invalid generic parameters for raw class %s", rawClass.getSimpleName());
+                this.type = ResolvedType.of(rawClass, parameters);
+            } catch (IllegalArgumentException e) {
+                logger.error("invalid generic parameters for raw class %s", rawClass.getSimpleName());
+                this.type = ResolvedType.of(rawClass);
             }
         }
-
-        public Alias(Consumer<T> consumer, Class<?> rawClass, Type... parameters) {
-            this.consumer = consumer;
-            this.rawClass = rawClass;
-            type = ParameterizedTypeImpl.make(rawClass, parameters, null);
-        }
     }
 
-    private Hashtable<String, Alias<?>> aliasTable = new Hashtable<>();
+    private Map<String, Alias<?>> aliasTable = new Hashtable<>();
 
     /**
      * Constructs an XML reader.
      */
     public XmlToJava() {
+        frozen = false;
     }
 
     /**
@@ -107,6 +83,98 @@ public class XmlToJava {
      */
     public XmlToJava(boolean echoOptions) {
         this.echoOptions = echoOptions;
+        frozen = false;
+    }
+
+    /**
+     * Constructs a frozen copy of a configured reader.
+     */
+    private XmlToJava(XmlToJava source) {
+        this.echoOptions = source.echoOptions;
+        this.parallelism = source.parallelism;
+        this.orderedDelivery = source.orderedDelivery;
+        this.aliasTable = Collections.unmodifiableMap(new HashMap<>(source.aliasTable));
+        this.frozen = true;
+    }
+
+    /**
+     * Creates a builder for a frozen reader. A frozen reader cannot be reconfigured,
+     * so one instance can serve any number of concurrent loads without synchronization.
+     * @return builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Collects aliases and options and produces a frozen, shareable XmlToJava.
+     */
+    public static class Builder {
+        private final XmlToJava reader = new XmlToJava();
+
+        private Builder() {
+        }
+
+        /**
+         * @param echoOptions controls whether anonymous instances are logged as they are created
+         * @return this
+         */
+        public Builder echoOptions(boolean echoOptions) {
+            reader.echoOptions = echoOptions;
+            return this;
+        }
+
+        /**
+         * @see XmlToJava#add(String, Class)
+         */
+        public Builder add(String alias, Class<?> rawClass) {
+            reader.add(alias, rawClass);
+            return this;
+        }
+
+        /**
+         * @see XmlToJava#add(String, Class, Class[])
+         */
+        public Builder add(String alias, Class<?> rawClass, Class<?> ... paramClasses) {
+            reader.add(alias, rawClass, paramClasses);
+            return this;
+        }
+
+        /**
+         * @see XmlToJava#add(String, Consumer, Class, Class[])
+         */
+        public <T> Builder add(String alias, Consumer<T> consumer, Class<T> rawClass, Class<?>... parameters) {
+            reader.add(alias, consumer, rawClass, parameters);
+            return this;
+        }
+
+        /**
+         * @see XmlToJava#parallelism(int)
+         */
+        public Builder parallelism(int parallelism) {
+            reader.parallelism(parallelism);
+            return this;
+        }
+
+        /**
+         * @see XmlToJava#orderedDelivery(boolean)
+         */
+        public Builder orderedDelivery(boolean ordered) {
+            reader.orderedDelivery(ordered);
+            return this;
+        }
+
+        /**
+         * @return a frozen reader; the builder can continue to be used to build others
+         */
+        public XmlToJava build() {
+            return new XmlToJava(reader);
+        }
+    }
+
+    private void checkNotFrozen() {
+        if (frozen)
+            throw new IllegalStateException("XmlToJava built by a Builder cannot be reconfigured");
     }
 
     /**
@@ -116,7 +184,8 @@ public class XmlToJava {
      * @param rawClass  the class whose static fields will be populated
      */
     public XmlToJava add(String alias, Class<?> rawClass) {
-        aliasTable.put(alias, new Alias(null, rawClass, rawClass.getTypeParameters()));
+        checkNotFrozen();
+        aliasTable.put(alias, new Alias(null, rawClass));
         return this;
     }
 
@@ -142,426 +211,285 @@ public class XmlToJava {
      * @return
      */
     public <T> XmlToJava add(String alias, Consumer<T> consumer, Class<T> rawClass, Class<?>... parameters) {
+        checkNotFrozen();
         aliasTable.put(alias, new Alias(consumer, rawClass, parameters));
         return this;
     }
 
     private void error(String format, String... params) {
-        Logger.error(format, (Object[]) params);
+        logger.error(format, (Object[]) params);
         error = true;
     }
 
     private void error(Exception ex, String format, String... params) {
-        Logger.error(ex, format, (Object[]) params);
+        logger.error(ex, format, (Object[]) params);
         error = true;
     }
 
-    public void load(File optionFile) {
-        Document doc = XmlUtil.readDocument(optionFile);
-        if (doc == null) {
-            error("Cannot read file '%s'", optionFile.getAbsolutePath());
-            return;
-        }
-        Element root = doc.getDocumentElement();
-//        getOptions(root);
-        readDocRoot(root);
+    /**
+     * Binds the children of an unaliased document root on several threads.
+     * The document is parsed as before; only binding is spread across a fork-join pool.
+     * Errors may be logged in any order.
+     * @param parallelism number of threads; 1, the default, binds on the loading thread
+     * @return this
+     */
+    public XmlToJava parallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        checkNotFrozen();
+        this.parallelism = parallelism;
+        return this;
     }
 
-    public void load(InputStream inputStream) {
-        Document doc = XmlUtil.readDocument(inputStream);
-        if (doc == null) {
-            error("Cannot read from input stream");
-            return;
-        }
-        Element root = doc.getDocumentElement();
-        readDocRoot(root);
+    /**
+     * Controls how anonymous instances are delivered when parallelism is greater than 1.
+     * @param ordered if true, the default, consumers are called on the loading thread in document order;
+     *                if false, consumers are called on pool threads as soon as instances are bound and must be thread safe
+     * @return this
+     */
+    public XmlToJava orderedDelivery(boolean ordered) {
+        checkNotFrozen();
+        this.orderedDelivery = ordered;
+        return this;
     }
 
-    public void load(Reader reader) {
-        Document doc = XmlUtil.readDocument(reader);
-        if (doc == null) {
-            error("Cannot read from input stream");
-            return;
+    /**
+     * Returns the calling thread's cached DocumentBuilder. Parallel loads need a document
+     * whose nodes are fully expanded so that it can be read concurrently.
+     * @return builder or null if the parser cannot be configured, in which case the error has been reported
+     */
+    private DocumentBuilder documentBuilder(LoadContext context) {
+        try {
+            return parallelism > 1 ? XmlFactories.expandedDocumentBuilder() : XmlFactories.documentBuilder();
+        } catch (ParserConfigurationException e) {
+            context.error(e, "Cannot configure parser");
+            return null;
         }
-        Element root = doc.getDocumentElement();
-//        getOptions(root);
-        readDocRoot(root);
     }
 
     /**
-     * Obtains the Alias for a class-by-tag.
-     *
-     * @param className
-     * @return
-     * @throws ClassNotFoundException
+     * Reads a file into the instances of aliased classes.
+     * @param optionFile
+     * @return the errors of this load
      */
-    private Alias loadAlias(String className) throws ClassNotFoundException {
-        Alias v = aliasTable.get(className);
-        if (v != null)
-            return v;
-        throw new ClassNotFoundException(className);
+    public LoadContext load(File optionFile) {
+        LoadContext context = new LoadContext();
+        Document doc = readDocument(optionFile, context);
+        if (doc != null)
+            new DomReader(this, context).readDocRoot(doc.getDocumentElement());
+        return finish(context);
     }
 
     /**
-     * Elements contained directly within the root must match classnames provided in the classes list.
-     *
-     * @param root
+     * Reads a stream into the instances of aliased classes. Unconditionally closes the stream.
+     * @param inputStream
+     * @return the errors of this load
      */
-    private void readDocRoot(Element root) {
-        try {
-            Alias alias = loadAlias(root.getTagName());
-            readAnonymous(root, alias);
-            return;
-        } catch (ClassNotFoundException e) {
-            // continue
-        } catch (Exception e) {
-            error(e, "Unable to load <%s>", root.getTagName());
-            return;
-        }
-        for (Node child = root.getFirstChild(); child != null; child = child.getNextSibling()) {
-            if (child instanceof Element) {
-                Element e = (Element) child;
-                try {
-                    Alias alias = loadAlias(e.getTagName());
-                    readAnonymous(e, alias);
-                } catch (Exception ex) {
-                    error(ex, "Unable to load <%s>", e.getTagName());
-                }
-            }
-        }
+    public LoadContext load(InputStream inputStream) {
+        LoadContext context = new LoadContext();
+        Document doc = readDocument(inputStream, context);
+        if (doc != null)
+            new DomReader(this, context).readDocRoot(doc.getDocumentElement());
+        return finish(context);
     }
 
-    private void readAnonymous(Element e, Alias alias) throws Exception {
-        Object object;
-        if (Collection.class.isAssignableFrom(alias.rawClass)) {
-            object = readCollection(e, alias.rawClass, alias.type, alias.consumer);
-        } else if (Map.class.isAssignableFrom(alias.rawClass)) {
-            object = readMap(e, alias.rawClass, alias.type, alias.consumer);
-        } else if (isSimple(alias.rawClass)) {
-            object = readValue(e, alias.rawClass);
-            if (alias.consumer != null)
-                alias.consumer.accept(object);
-        } else {
-            object = readAggregate(e, alias.rawClass, alias.consumer);
-        }
-        if (object != null && echoOptions)
-            logOptions(Logger.LogLevel.Info, object, object.getClass(), 0);
+    /**
+     * Reads from a Reader into the instances of aliased classes. Unconditionally closes the reader.
+     * @param reader
+     * @return the errors of this load
+     */
+    public LoadContext load(Reader reader) {
+        LoadContext context = new LoadContext();
+        Document doc = readDocument(reader, context);
+        if (doc != null)
+            new DomReader(this, context).readDocRoot(doc.getDocumentElement());
+        return finish(context);
     }
 
-    private Object readAggregate(Element e, Class aClass, Consumer consumer) throws Exception {
-        Constructor<?> init = aClass.getConstructor();
-        Object a = init.newInstance();
-        readFields(e, aClass, a);
-        if (consumer != null)
-            consumer.accept(a);
-        return a;
+    /**
+     * @return document or null if the file cannot be parsed, in which case the error has been reported
+     */
+    Document readDocument(File file, LoadContext context) {
+        DocumentBuilder builder = documentBuilder(context);
+        if (builder == null)
+            return null;
+        Document doc = XmlUtil.readDocument(file, builder);
+        if (doc == null)
+            context.error("Cannot read file '%s': %s", file.getAbsolutePath(), XmlUtil.getError());
+        return doc;
     }
 
-    private Object readCollection(Element e, Class aClass, Type genericType, Consumer consumer) throws Exception {
-        Constructor<?> init;
-        try {
-            init = aClass.getConstructor();
-        } catch (NoSuchMethodException ex) {
-            throw new Exception(String.format("cannot create instance of %s", aClass.getSimpleName()));
-        }
-        Collection c = (Collection) init.newInstance();
-        Type itemType = null;
-        if (genericType == null) {
-            error("%s: unable to determing item type", e.getTagName());
-            return c;
-        } else if (genericType instanceof ParameterizedType) {
-            itemType = ((ParameterizedType)genericType).getActualTypeArguments()[0];
-        } else if (genericType instanceof Class) {
-            itemType = genericType;
+    /**
+     * Unconditionally closes the stream.
+     * @return document or null if the stream cannot be parsed, in which case the error has been reported
+     */
+    Document readDocument(InputStream inputStream, LoadContext context) {
+        DocumentBuilder builder = documentBuilder(context);
+        if (builder == null) {
+            closeQuietly(inputStream);
+            return null;
         }
+        Document doc = XmlUtil.readDocument(inputStream, builder);
+        if (doc == null)
+            context.error("Cannot read from input stream: %s", XmlUtil.getError());
+        return doc;
+    }
 
-        if (itemType != null) {
-            readCollectionItems(e, itemType, ((Object x) -> c.add(x)));
-        } else {
-            error("%s: unable to determing item type", e.getTagName());
+    /**
+     * Unconditionally closes the reader.
+     * @return document or null if the reader cannot be parsed, in which case the error has been reported
+     */
+    Document readDocument(Reader reader, LoadContext context) {
+        DocumentBuilder builder = documentBuilder(context);
+        if (builder == null) {
+            closeQuietly(reader);
+            return null;
         }
+        Document doc = XmlUtil.readDocument(reader, builder);
+        if (doc == null)
+            context.error("Cannot read from input stream: %s", XmlUtil.getError());
+        return doc;
+    }
+
+    /**
+     * Reads an already parsed document into the instances of aliased classes.
+     * A document read by a parallel load must not have been parsed with deferred node expansion
+     * (see XmlFactories.expandedDocumentBuilder).
+     * @param document
+     * @return the errors of this load
+     */
+    public LoadContext load(Document document) {
+        LoadContext context = new LoadContext();
+        new DomReader(this, context).readDocRoot(document.getDocumentElement());
+        return finish(context);
+    }
+
+    /**
+     * Creates a JavaToXml that writes instances under the aliases of this reader, so that
+     * this reader can load the documents it writes. Aliases added later are not seen.
+     * @return writer
+     */
+    public JavaToXml writer() {
+        return new JavaToXml(this);
+    }
+
+    /**
+     * Creates a Reloader that re-binds only the top-level elements of a document
+     * that changed since its previous reload.
+     * @return reloader for one document
+     */
+    public Reloader reloader() {
+        return new Reloader(this);
+    }
 
-        if (consumer != null)
-            consumer.accept(c);
-        return c;
-    }
-
-    private Map readMap(Element e, Class aClass, Type genericType, Consumer consumer) throws NoSuchMethodException, InstantiationException, IllegalAccessException, InvocationTargetException {
-        Constructor<?> init = aClass.getConstructor();
-        Map c = (Map) init.newInstance();
-        Type keyClass = null;
-        Type valueClass = null;
-
-        if (genericType == null) {
-            error("%s: unable to determine key or value types", e.getTagName());
-            return c;
-        } else if (genericType instanceof ParameterizedType) {
-            ParameterizedType pType = (ParameterizedType) genericType;
-            Type [] pTypes = pType.getActualTypeArguments();
-            keyClass = pTypes[0];
-            valueClass = pTypes[1];
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
         }
-        if (keyClass != null && valueClass != null && keyClass instanceof Class) {
-            readMapItems(e, (Class)keyClass, valueClass, (Object k, Object v) -> c.put(k, v));
-        } else {
-            error("%s: unable to determine key or value types", e.getTagName());
+    }
+
+    /**
+     * Reads a file without building a DOM. Anonymous instances are passed to their consumers
+     * as soon as the end tags of their elements have been read, so memory use is bounded
+     * by the largest instance rather than by the document.
+     * @param optionFile
+     * @return the errors of this load
+     */
+    public LoadContext stream(File optionFile) {
+        LoadContext context = new LoadContext();
+        try (InputStream in = new FileInputStream(optionFile)) {
+            new StaxReader(this, context).read(in);
+        } catch (IOException | XMLStreamException e) {
+            context.error(e, "Cannot read file '%s'", optionFile.getAbsolutePath());
         }
-        if (consumer != null)
-            consumer.accept(c);
-        return c;
+        return finish(context);
     }
 
     /**
-     * If the instance is null, only static fields can be assigned. Otherwise
-     * fields can be static or instance.
-     * @param parentElement
-     * @param parentClass
-     * @param instance
+     * Reads a stream without building a DOM. Unconditionally closes the stream.
+     * @param inputStream
+     * @return the errors of this load
+     * @see #stream(File)
      */
-    private void readFields(Element parentElement, Class<?> parentClass, Object instance) {
-        Field[] fields = parentClass.getFields();
-        for (Node child = parentElement.getFirstChild(); child != null; child = child.getNextSibling()) {
-            if (child instanceof Element) {
-                Element e = (Element) child;
-                String fieldName = e.getTagName();
-                Field field = null;
-                try {
-                    field = parentClass.getField(fieldName);
-                    Object value = readValue(e, field); //fieldName, fieldValue, field.getType());
-                    if (value != null) {
-                        assignField(parentClass, instance, field, value);
-                    }
-                } catch (NoSuchFieldException ex) {
-                    Method setter = getAnySetterMethod(parentClass, fieldName);
-                    if (setter != null) {
-                        Object value = readValue(e, setter.getParameters()[0].getType());
-                        try {
-                            setter.invoke(instance, value);
-                        } catch (IllegalAccessException exc) {
-                            error("%s: %s", setter.toString(), exc.getMessage());
-                        } catch (InvocationTargetException exc) {
-                            error("%s: %s", setter.toString(), exc.getMessage());
-                        }
-                    } else {
-                        error("field named \"%s\" in class %s is absent, inaccessible, or missing setter", fieldName, parentElement.getTagName());
-                    }
-                }
-            }
+    public LoadContext stream(InputStream inputStream) {
+        LoadContext context = new LoadContext();
+        try (InputStream in = inputStream) {
+            new StaxReader(this, context).read(in);
+        } catch (IOException | XMLStreamException e) {
+            context.error(e, "Cannot read from input stream");
         }
+        return finish(context);
     }
 
-    private void assignField(Class<?> parentClass, Object instance, Field field, Object fieldValue) {
-        String fieldName = field.getName();
-        Class<?> fieldType = field.getType();
-        Method setter = getSetterMethod(parentClass, fieldName, fieldType);
-        if (setter != null) {
-            try {
-                setter.invoke(instance, fieldValue);
-            } catch (IllegalAccessException e) {
-                error("setter for field %s in class %s is not accessible", fieldName, parentClass.getSimpleName());
-            } catch (InvocationTargetException e) {
-                error("setter for field %s in class %s is not invocable", fieldName, parentClass.getSimpleName());
-            }
-        } else {
-            try {
-                field.set(instance, fieldValue);
-            } catch (IllegalAccessException e) {
-                error("field %s in class %s is not accessible", fieldName, parentClass.getSimpleName());
-            } catch (Exception e) {
-                error("field %s in class %s is not setable", fieldName, parentClass.getSimpleName());
-            }
+    /**
+     * Reads from a Reader without building a DOM. Unconditionally closes the reader.
+     * @param reader
+     * @return the errors of this load
+     * @see #stream(File)
+     */
+    public LoadContext stream(Reader reader) {
+        LoadContext context = new LoadContext();
+        try (Reader in = reader) {
+            new StaxReader(this, context).read(in);
+        } catch (IOException | XMLStreamException e) {
+            context.error(e, "Cannot read from input stream");
         }
+        return finish(context);
     }
 
-    private String getParentTag(Element e) {
-        return ((Element)e.getParentNode()).getTagName();
+    LoadContext finish(LoadContext context) {
+        if (context.isError())
+            error = true;
+        return context;
     }
 
     /**
-     * Parses an element to produce a value matching the type of the field parameter.
-     * If the type is String, return the text content as a string.
-     * If the type has a valueOf method, use it to parse the text content.
-     * If the type is Collection, read the collection.
-     * If the type is Map, read the map.
-     * Finally, Assume the type is aggregate and read an instance.
-     * @param e
-     * @param field
-     * @return
+     * Passes an anonymous instance to the consumer of its alias and logs it if echoOptions is set.
+     * @param alias
+     * @param object
      */
-    private Object readValue(Element e, Field field) { //String fieldName, String fieldValue, Class<?> valueClass) {
-        Class<?> valueClass = field.getType();
-        valueClass = typeWrapperFor(valueClass);
-        String fieldName = field.getName();
-        try {
-            Method valueOf = getValueOfMethod(valueClass); //valueClass.getMethod("valueOf", String.class);
-            if (valueOf != null) {
-                return valueOf.invoke(null, e.getTextContent().trim());
-            }
-        } catch (InvocationTargetException ex) {
-            error("%s.%s: %s", e.getParentNode().getNodeName(), fieldName, ex.getTargetException().getMessage());
-            return null;
-        } catch (Exception ex) {
-            error("%s.%s: %s", getParentTag(e), fieldName, ex.getMessage());
-            return null;
-        }
-        try {
-            if (Collection.class.isAssignableFrom(valueClass)) {
-                Object c = readCollection(e, valueClass, field.getGenericType(), null);
-                return c;
-            } else if (Map.class.isAssignableFrom(valueClass)) {
-                Map m = readMap(e, valueClass, field.getGenericType(), null);
-                return m;
-            } else {
-                Object c = readAggregate(e, valueClass, null);
-                return c;
-            }
-        } catch (Exception ex) {
-            error("error <%s>.%s: %s", getParentTag(e), fieldName, ex.getMessage());
-        }
+    @SuppressWarnings("unchecked")
+    void deliver(Alias alias, Object object) {
+        if (alias.consumer != null)
+            alias.consumer.accept(object);
+        echo(object);
+    }
 
-        return null;
+    /**
+     * Logs an anonymous instance if echoOptions is set.
+     * @param object
+     */
+    void echo(Object object) {
+        if (object != null && echoOptions)
+            logOptions(Logger.LogLevel.Info, object, object.getClass(), 0);
+    }
 
+    /** @return true if the tag name has an alias */
+    boolean hasAlias(String tagName) {
+        return aliasTable.containsKey(tagName);
     }
 
-    private Object readValue(Element e, Class<?> valueClass) { //String fieldName, String fieldValue, Class<?> valueClass) {
-        valueClass = typeWrapperFor(valueClass);
-        try {
-            Method valueOf = getValueOfMethod(valueClass); //valueClass.getMethod("valueOf", String.class);
-            if (valueOf != null) {
-                return valueOf.invoke(null, e.getTextContent().trim());
-            }
-        } catch (InvocationTargetException ex) {
-            error("%s.%s: %s", e.getParentNode().getNodeName(), e.getTagName(), ex.getTargetException().getMessage());
-            return null;
-        } catch (Exception ex) {
-            error("%s.%s: %s", getParentTag(e), e.getTagName(), ex.getMessage());
-            return null;
-        }
-        try {
-            if (Collection.class.isAssignableFrom(valueClass)) {
-                Object c = readCollection(e, valueClass, (Type)valueClass, null);
-                return c;
-            } else if (Map.class.isAssignableFrom(valueClass)) {
-                Map m = readMap(e, valueClass, (Type)valueClass, null);
-                return m;
-            } else {
-                Object c = readAggregate(e, valueClass, null);
-                return c;
-            }
-        } catch (Exception ex) {
-            error("error %s.%s: %s", getParentTag(e), e.getTagName(), ex.getMessage());
-        }
-        return null;
-
-    }
-
-    private Hashtable<Class<?>, Class<?>> typeTable = new Hashtable () {{
-        put(String.class, StringConverter.class);
-        put(int.class, Integer.class);
-        put(byte.class, Byte.class);
-        put(short.class, Short.class);
-        put(long.class, Long.class);
-        put(float.class, Float.class);
-        put(double.class, Double.class);
-        put(char.class, Character.class);
-        put(boolean.class, Boolean.class);
-        put(void.class, Void.class);
-    }};
-
-    private Class<?> typeWrapperFor(Class<?> type) {
-        Class<?> result = typeTable.get(type);
-        if (result == null)
-            return type;
-        return result;
-    }
-
-    private void readMapItems(Element root, Class<?> keyClass, Type valueClass, BiConsumer consumer) {
-        Method keyConverter = null;
-        Method valueConverter = null;
-        keyClass = typeWrapperFor(keyClass);
-        keyConverter = getValueOfMethod(keyClass);
-        if (valueClass instanceof Class) {
-            valueClass = typeWrapperFor((Class)valueClass);
-            valueConverter = getValueOfMethod((Class)valueClass);
-        }
+    Map<String, Alias<?>> aliases() {
+        return aliasTable;
+    }
 
-        for (Node child = root.getFirstChild(); child != null; child = child.getNextSibling()) {
-            if (child instanceof Element) {
-                Element e = (Element) child;
-                String tagName = e.getTagName();
-                Object keyValue = null;
-                try {
-
-                    if (keyConverter != null) {
-                        try {
-                            keyValue = keyConverter.invoke(null, tagName);
-                        } catch (Exception ex) {
-                            throw new Exception(String.format("key %s cannot be converted to %s", tagName, keyClass.getSimpleName()));
-                        }
-                    }
-                    if (keyValue == null) {
-                        throw new Exception(String.format("key %s cannot be converted to %s", tagName, keyClass.getSimpleName()));
-                    }
-                    Object valueValue = null;
-                    if (valueConverter != null) {
-                        valueValue = valueConverter.invoke(null, e.getTextContent().trim());
-                    } else if (valueClass instanceof Class) {
-                        valueValue = readValue(e, (Class<?>) valueClass);
-                    } else if (valueClass instanceof ParameterizedType) {
-                        ParameterizedType ptype = (ParameterizedType) valueClass;
-                        Type rawType = ptype.getRawType();
-                        if (!(rawType instanceof Class)) {
-                            throw new Exception(String.format("map item %s not supported", valueClass.toString()));
-                        }
-                        Type [] generics = ptype.getActualTypeArguments();
-                        if (Collection.class.isAssignableFrom((Class)rawType)) {
-                            valueValue = readCollection(e, (Class)rawType, generics[0], null);
-                        } else if (Map.class.isAssignableFrom((Class)rawType)) {
-                            valueValue = readMap(e, (Class)generics[0], generics[1], null);
-                        } else {
-                            valueValue = readAggregate(e, (Class)rawType, null);
-                        }
-                    } else {
-                        valueValue = readValue(e, (Class<?>)valueClass);
-                    }
-                    if (valueValue != null) {
-                        consumer.accept(keyValue, valueValue);
-                    } else {
-                        throw new Exception(String.format("value %s cannot be converted to %s", e.getTextContent().trim(), ((Class)valueClass).getSimpleName()));
-                    }
-                } catch (InvocationTargetException ex) {
-                    error("Unable to map %s because %s cannot be converted to %s", tagName, e.getTextContent(), ((Class)valueClass).getSimpleName());
-                } catch (Exception ex) {
-                    error("Unable to map %s onto %s: %s", tagName, e.getTextContent(), ex.getMessage());
-                }
-            }
-        }
+    Alias aliasFor(String tagName) {
+        return aliasTable.get(tagName);
     }
 
-    private void readCollectionItems(Element root, Type itemType, Consumer consumer) {
-        for (Node child = root.getFirstChild(); child != null; child = child.getNextSibling()) {
-            if (child instanceof Element) {
-                Element e = (Element) child;
-                try {
-                    if (itemType instanceof ParameterizedType) {
-                        ParameterizedType pType = (ParameterizedType)itemType;
-                        if (Collection.class.isAssignableFrom((Class)pType.getRawType())) {
-                            Object value = readCollection(e, (Class) pType.getRawType(), pType.getActualTypeArguments()[0], null);
-                            consumer.accept(value);
-                        } else if (Map.class.isAssignableFrom((Class)pType.getRawType())) {
-                            Object value = readMap(e, (Class)pType.getRawType(), pType, null);
-                            consumer.accept(value);
-                        }
-                    } else if (itemType instanceof Class) {
-                        consumer.accept(readValue(e, (Class)itemType));
-                    } else {
-                        error("Collection of %s not supported", itemType.toString());
-                    }
-                } catch (Exception ex) {
-                    error(ex, "Unable to load class for <%s>", e.getTagName());
-                }
-            }
-        }
+    /**
+     * Obtains the Alias for a class-by-tag.
+     *
+     * @param className
+     * @return
+     * @throws ClassNotFoundException
+     */
+    Alias loadAlias(String className) throws ClassNotFoundException {
+        Alias v = aliasTable.get(className);
+        if (v != null)
+            return v;
+        throw new ClassNotFoundException(className);
     }
 
     /**
@@ -603,21 +531,6 @@ public class XmlToJava {
         return getSetterMethod(optionsClass, fieldName, String.class);
     }
 
-    private Method getValueOfMethod(Class<?> parentClass) {
-        try {
-            if (parentClass == String.class)
-                parentClass = StringConverter.class;
-            Method m = parentClass.getMethod("valueOf", String.class);
-            if (Modifier.isStatic(m.getModifiers()) && Modifier.isPublic(m.getModifiers())) {
-                return m;
-            } else {
-                error("%s.valueOf method must be public and static", parentClass.getSimpleName());
-            }
-        } catch (NoSuchMethodException e) {
-        }
-        return null;
-    }
-
     private Method getSetterMethod(Class<?> parentClass, String fieldName, Class<?> fieldType) {
         try {
             return parentClass.getMethod(getSetterName(fieldName), fieldType);
@@ -626,59 +539,45 @@ public class XmlToJava {
         }
     }
 
-    private Method getAnySetterMethod(Class <?> parentClass, String fieldName) {
-        String setterName = getSetterName(fieldName);
-        for (Method m: parentClass.getMethods()) {
-            if (m.getName().equals(setterName) && m.getParameters().length == 1) {
-                return m;
-            }
-        }
-        return null;
-    }
-
     private String getSetterName(String fieldName) {
         return "set" + fieldName.substring(0, 1).toUpperCase() + fieldName.substring(1);
     }
 
     private boolean isSimple(Class<?> optionsClass) {
-        try {
-            return optionsClass == String.class || optionsClass.isPrimitive() || optionsClass.getMethod("valueOf", String.class) != null;
-        } catch (NoSuchMethodException e) {
-            return false;
-        }
+        return BindingPlan.of(optionsClass).isSimple();
     }
     public void logOptions(Logger.LogLevel logLevel, Object instance, Class<?> optionsClass, int indent) {
         logOptions(logLevel, "", instance, optionsClass, indent);
     }
 
     public void logOptions(Logger.LogLevel logLevel, String name, Object instance, Class <?> optionsClass, int indent) {
-        if (!Logger.isLogging(logLevel))
+        if (!logger.isLogging(logLevel))
             return;
         try {
             if (instance == null) {
-                Logger.log(logLevel, "%s%s=%s", indent(indent), name, "null");
+                logger.log(logLevel, "%s%s=%s", indent(indent), name, "null");
             } else if (isSimple(optionsClass)) {
-                Logger.log(logLevel, "%s%s=%s", indent(indent), name, instance);
+                logger.log(logLevel, "%s%s=%s", indent(indent), name, instance);
                 return;
             } else if (Collection.class.isAssignableFrom(optionsClass)) {
-                Logger.log(logLevel, "%s%s:%s", indent(indent), name, "collection"); //optionsClass.getSimpleName());
+                logger.log(logLevel, "%s%s:%s", indent(indent), name, "collection"); //optionsClass.getSimpleName());
                 int index = 0;
                 for (Object item: (Collection)instance) {
                     logOptions(logLevel, ""+index++, item, item.getClass(), indent+1);
                 }
             } else if (Map.class.isAssignableFrom(optionsClass)) {
-                Logger.log(logLevel, "%s%s:%s", indent(indent), name, "map"); //optionsClass.getSimpleName());
+                logger.log(logLevel, "%s%s:%s", indent(indent), name, "map"); //optionsClass.getSimpleName());
                 Map m = (Map)instance;
                 for (Object k: m.keySet()) {
                     logOptions(logLevel, k.toString(), m.get(k), m.get(k).getClass(), indent+1);
                 }
             } else {
-                Logger.log(logLevel, "%s%s:%s", indent(indent), name, optionsClass.getSimpleName());
+                logger.log(logLevel, "%s%s:%s", indent(indent), name, optionsClass.getSimpleName());
                 for (Field f : optionsClass.getFields()) {
                     try {
                         Object value = f.get(instance);
                         if (value == instance) {
-                            Logger.log(logLevel, "%s%s=self", indent(indent+1), f.getName());
+                            logger.log(logLevel, "%s%s=self", indent(indent+1), f.getName());
                         } else
                             logOptions(logLevel, f.getName(), value, f.getType(), indent+1);
                     } catch (IllegalAccessException ex2) {